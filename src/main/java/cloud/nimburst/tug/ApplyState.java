@@ -0,0 +1,123 @@
+package cloud.nimburst.tug;
+
+import cloud.nimburst.tug.TugManifest.Deployment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * The content of each resource configuration as last successfully pushed, and the cluster it was pushed to, so a push
+ * can skip resources which have not changed since.
+ */
+public class ApplyState {
+
+    private final Path file;
+    private final Path configRoot;
+    private final String cluster;
+    private final Properties state = new Properties();
+
+    /**
+     * Instantiates a new ApplyState, loading any state previously saved to the file.
+     *
+     * @param file       the file the state is stored in or null to keep it in memory only
+     * @param configRoot the directory relative resource locations are resolved against
+     * @param cluster    identifies the cluster resources are pushed to
+     */
+    public ApplyState(Path file, Path configRoot, String cluster) {
+
+        this.file = file;
+        this.configRoot = configRoot;
+        this.cluster = cluster;
+        if (file != null && Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                state.load(in);
+            } catch (IOException e) {
+                System.out.println("Unable to read apply state " + file + ", ignoring it");
+            }
+        }
+    }
+
+    private String hash(Deployment deployment) {
+
+        Path location = Paths.get(deployment.getLocation());
+        if (!location.isAbsolute() && configRoot != null) {
+            location = configRoot.resolve(location);
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(location));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether a resource configuration is unchanged since it was last successfully pushed to this cluster.
+     *
+     * @param deployment the deployment
+     * @return true if the configuration was pushed as it is now
+     */
+    public synchronized boolean isCurrent(Deployment deployment) {
+
+        String hash = hash(deployment);
+        return hash != null
+                && hash.equals(state.getProperty(deployment.getName() + ".hash"))
+                && cluster.equals(state.getProperty(deployment.getName() + ".cluster"));
+    }
+
+    /**
+     * Records a resource configuration as successfully pushed.
+     *
+     * @param deployment the deployment
+     */
+    public synchronized void record(Deployment deployment) {
+
+        String hash = hash(deployment);
+        if (hash == null) {
+            forget(deployment);
+            return;
+        }
+        state.setProperty(deployment.getName() + ".hash", hash);
+        state.setProperty(deployment.getName() + ".cluster", cluster);
+    }
+
+    /**
+     * Forgets a resource, after it has been removed or could not be pushed.
+     *
+     * @param deployment the deployment
+     */
+    public synchronized void forget(Deployment deployment) {
+
+        state.remove(deployment.getName() + ".hash");
+        state.remove(deployment.getName() + ".cluster");
+    }
+
+    /**
+     * Saves the state to the file, if there is one.
+     */
+    public synchronized void save() {
+
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (OutputStream out = Files.newOutputStream(file)) {
+                state.store(out, "tug apply state");
+            }
+        } catch (IOException e) {
+            System.out.println("Unable to save apply state " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package cloud.nimburst.tug;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates named daemon threads so Tug's pools never keep the JVM alive.
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Instantiates a new DaemonThreadFactory.
+     *
+     * @param prefix the prefix of the thread names
+     */
+    public DaemonThreadFactory(String prefix) {
+
+        this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+
+        Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,90 @@
+package cloud.nimburst.tug;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Durations of resource actions recorded by previous runs, used to weight the critical path.
+ */
+public class DurationHistory {
+
+    private final Path file;
+    private final Properties durations = new Properties();
+
+    /**
+     * Instantiates a new DurationHistory, loading any durations previously saved to the file.
+     *
+     * @param file the file the durations are stored in or null to keep them in memory only
+     */
+    public DurationHistory(Path file) {
+
+        this.file = file;
+        if (file != null && Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                durations.load(in);
+            } catch (IOException e) {
+                System.out.println("Unable to read duration history " + file + ", ignoring it");
+            }
+        }
+    }
+
+    private static String key(String name, ResourceActionDirection direction) {
+
+        return name + "." + direction.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the last recorded duration of an action.
+     *
+     * @param name      the deployment name
+     * @param direction create or delete
+     * @return the duration in milliseconds or -1 if none has been recorded
+     */
+    public synchronized long getMillis(String name, ResourceActionDirection direction) {
+
+        String value = durations.getProperty(key(name, direction));
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Records the duration of an action.
+     *
+     * @param name      the deployment name
+     * @param direction create or delete
+     * @param millis    the duration in milliseconds
+     */
+    public synchronized void record(String name, ResourceActionDirection direction, long millis) {
+
+        durations.setProperty(key(name, direction), Long.toString(millis));
+    }
+
+    /**
+     * Saves the recorded durations to the file, if there is one.
+     */
+    public synchronized void save() {
+
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (OutputStream out = Files.newOutputStream(file)) {
+                durations.store(out, "tug resource action durations");
+            }
+        } catch (IOException e) {
+            System.out.println("Unable to save duration history " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package cloud.nimburst.tug;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * What happens to the resources owned by a resource when it is deleted, such as the Pods of a Deployment.
+ */
+public enum PropagationPolicy {
+    /**
+     * The resource is only gone once the resources it owns are, so a deletion is complete when nothing of it is left.
+     */
+    @JsonProperty("foreground")
+    FOREGROUND("Foreground"),
+    /**
+     * The resource goes at once and the resources it owns are removed in the background after it.
+     */
+    @JsonProperty("background")
+    BACKGROUND("Background"),
+    /**
+     * The resource goes at once and the resources it owns are left in the cluster.
+     */
+    @JsonProperty("orphan")
+    ORPHAN("Orphan");
+
+    private final String value;
+
+    PropagationPolicy(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Gets the policy as the API server names it.
+     *
+     * @return the API value
+     */
+    public String getValue() {
+        return value;
+    }
+}
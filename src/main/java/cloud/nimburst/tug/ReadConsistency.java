@@ -0,0 +1,17 @@
+package cloud.nimburst.tug;
+
+/**
+ * How current the reads made while waiting on resources must be.
+ */
+public enum ReadConsistency {
+    /**
+     * Every read is a quorum read served from etcd, so it sees all writes made before it.
+     */
+    STRONG,
+    /**
+     * Polls for readiness and deletion are served from the watch cache of the API server, which takes load off etcd
+     * but may lag slightly behind it. Reads deciding what to change, and the check that a newly created resource
+     * exists, are still quorum reads.
+     */
+    CACHED
+}
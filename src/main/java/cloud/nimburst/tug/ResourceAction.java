@@ -1,21 +1,124 @@
 package cloud.nimburst.tug;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * A ResourceAction executes resource lifecycle actions in the Kubernetes cluster.
+ * <p>
+ * Actions issue their API calls on the calling thread and return as soon as there is nothing left to do but wait, the
+ * waiting is done by continuations scheduled on the shared {@link ResourceActionContext}.
  */
 public interface ResourceAction {
 
     /**
-     * Creates and waits for a resource to be in a ready state.
+     * Creates a resource and waits for it to be in a ready state.
+     *
+     * @return a future completed once the resource is ready, or completed exceptionally with a
+     * {@link ResourceActionException} if an error occurs when deploying the resource
+     */
+    CompletableFuture<Void> makeReady();
+
+    /**
+     * Creates a resource and waits for it to be in a ready state, reporting when the resource exists along the way.
+     * Actions which cannot tell report it once the resource is ready.
      *
-     * @throws ResourceActionException if an error occurs when deploying the resource
+     * @param created run once the resource exists in the cluster, at most once and only if it does
+     * @return a future completed once the resource is ready, with true if the resource in the cluster was created,
+     * updated or found to match its configuration and false if it differs and was left as it is, or completed
+     * exceptionally with a {@link ResourceActionException} if an error occurs when deploying the resource
      */
-    void makeReady() throws ResourceActionException;
+    default CompletableFuture<Boolean> makeReady(Runnable created) {
+        return makeReady().thenApply(ready -> {
+            created.run();
+            return true;
+        });
+    }
 
     /**
      * Deletes the resource.
      *
-     * @throws ResourceActionException if an error occurs when deleting the resource
+     * @return a future completed once the resource is gone, or completed exceptionally with a
+     * {@link ResourceActionException} if an error occurs when deleting the resource
+     */
+    CompletableFuture<Void> delete();
+
+    /**
+     * Deletes the resource, optionally without waiting for it to be gone once the deletion is accepted. Actions which
+     * cannot tell always wait.
+     *
+     * @param awaitGone whether to wait for the resource to be gone
+     * @return a future completed once the resource is gone, or its deletion accepted if not waiting, or completed
+     * exceptionally with a {@link ResourceActionException} if an error occurs when deleting the resource
+     */
+    default CompletableFuture<Void> delete(boolean awaitGone) {
+        return delete();
+    }
+
+    /**
+     * Gets the kind of the resource.
+     *
+     * @return the kind, or null if unknown
+     */
+    default String getKind() {
+        return null;
+    }
+
+    /**
+     * Gets the namespace of the resource.
+     *
+     * @return the namespace, or null if the resource is not namespaced
+     */
+    default String getNamespace() {
+        return null;
+    }
+
+    /**
+     * Gets the namespace whose contents the cluster deletes along with the resource.
+     *
+     * @return the namespace, or null if deleting the resource does not take a namespace with it
+     */
+    default String getOwnedNamespace() {
+        return null;
+    }
+
+    /**
+     * Gets the key of the group of resources whose existence a single list call can answer, typically their kind and
+     * namespace.
+     *
+     * @return the key, or null if the action does not take part in existence snapshots
+     */
+    default String getSnapshotKey() {
+        return null;
+    }
+
+    /**
+     * Lists all resources of this action's snapshot group.
+     *
+     * @return the resources currently in the cluster, by name
+     * @throws ResourceActionException if the resources could not be listed
+     */
+    default Map<String, Object> listSnapshot() throws ResourceActionException {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Lists all resources of this action's snapshot group for a group which only needs to know what exists, as when
+     * all its resources are being deleted. Kinds able to list the metadata of resources alone return just that.
+     *
+     * @return the resources currently in the cluster, or only their metadata, by name
+     * @throws ResourceActionException if the resources could not be listed
+     */
+    default Map<String, Object> listExistenceSnapshot() throws ResourceActionException {
+        return listSnapshot();
+    }
+
+    /**
+     * Hands the action the snapshot of its group, which answers its first existence check in place of an API call.
+     *
+     * @param snapshot the resources of the group, by name
      */
-    void delete() throws ResourceActionException;
+    default void useSnapshot(Map<String, Object> snapshot) {
+    }
 }
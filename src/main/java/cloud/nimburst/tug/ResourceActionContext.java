@@ -0,0 +1,200 @@
+package cloud.nimburst.tug;
+
+import cloud.nimburst.tug.client.AdaptiveLimit;
+import cloud.nimburst.tug.client.ManagedClients;
+import cloud.nimburst.tug.client.ObservingInterceptor;
+import cloud.nimburst.tug.client.PayloadStats;
+import cloud.nimburst.tug.client.RateLimitInterceptor;
+import cloud.nimburst.tug.client.TokenBucket;
+import com.squareup.okhttp.Interceptor;
+import io.kubernetes.client.ApiClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Services shared by all {@link ResourceAction}s of a run.
+ */
+public class ResourceActionContext implements AutoCloseable {
+
+    private static final int SCHEDULER_THREADS = 8;
+    private static final int ADAPTIVE_MAX_FACTOR = 8;
+    private static final long WATCH_KEEP_ALIVE_SECONDS = 60L;
+
+    private final TugOptions options;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService watchExecutor;
+    private final Map<String, Object> shared = new LinkedHashMap<>();
+    private final RateLimitInterceptor rateLimiter;
+    private final AdaptiveLimit adaptiveLimit;
+    private final ManagedClients clients;
+    private final PayloadStats payloadStats = new PayloadStats();
+    private ApiClient apiClient;
+    private ApiClient watchClient;
+
+    /**
+     * Instantiates a new ResourceActionContext.
+     *
+     * @param options the execution options
+     */
+    public ResourceActionContext(TugOptions options) {
+
+        this.options = options;
+        scheduler = Executors.newScheduledThreadPool(SCHEDULER_THREADS, new DaemonThreadFactory("tug-scheduler"));
+        // a watch blocks its thread until it ends, so the pool is capped and rejects watches beyond the cap
+        watchExecutor = new ThreadPoolExecutor(0, options.getMaxWatches(), WATCH_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new DaemonThreadFactory("tug-watch"));
+        rateLimiter = new RateLimitInterceptor(
+                new TokenBucket(options.getReadQps(), options.getReadBurst()),
+                new TokenBucket(options.getMutatingQps(), options.getMutatingBurst()));
+        adaptiveLimit = options.isAdaptiveConcurrency()
+                ? new AdaptiveLimit(options.getConcurrency(), options.getConcurrency() * ADAPTIVE_MAX_FACTOR)
+                : null;
+        clients = new ManagedClients(options.isAdaptiveConcurrency()
+                ? options.getConcurrency() * ADAPTIVE_MAX_FACTOR
+                : options.getConcurrency());
+    }
+
+    /**
+     * Gets the execution options.
+     *
+     * @return the execution options
+     */
+    public TugOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Gets the timer used to run status checks while waiting on resources. Tasks run on it must not block for longer
+     * than a single API call.
+     *
+     * @return the scheduler
+     */
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Gets the executor running watches, which block while waiting for events. It runs at most as many watches as the
+     * options allow and rejects any further watch with a {@link java.util.concurrent.RejectedExecutionException}, upon
+     * which the caller polls instead.
+     *
+     * @return the watch executor
+     */
+    public ExecutorService getWatchExecutor() {
+        return watchExecutor;
+    }
+
+    /**
+     * Gets the limit on the number of resources acted on at once, adjusted to the health of the API server.
+     *
+     * @return the limit or null if concurrency is not adaptive
+     */
+    public AdaptiveLimit getAdaptiveLimit() {
+        return adaptiveLimit;
+    }
+
+    /**
+     * Gets the sizes of the list responses of the run.
+     *
+     * @return the payload stats
+     */
+    public PayloadStats getPayloadStats() {
+        return payloadStats;
+    }
+
+    /**
+     * Gets the client used for API calls, shared by all actions of the run. All its requests go through the run's rate
+     * limiter, and their outcome is reported to the adaptive limit if there is one.
+     *
+     * @return the client
+     * @throws IOException if the client could not be configured
+     */
+    public synchronized ApiClient getApiClient() throws IOException {
+
+        if (apiClient == null) {
+            List<Interceptor> interceptors = new ArrayList<>();
+            interceptors.add(rateLimiter);
+            if (adaptiveLimit != null) {
+                interceptors.add(new ObservingInterceptor(adaptiveLimit));
+            }
+            interceptors.add(payloadStats);
+            apiClient = clients.newClient(interceptors);
+        }
+        return apiClient;
+    }
+
+    /**
+     * Opens a connection to the API server in the background, so it is ready by the time the first resource is acted
+     * on.
+     *
+     * @throws IOException if the client could not be configured
+     */
+    public void prewarm() throws IOException {
+
+        clients.prewarm(getApiClient());
+    }
+
+    /**
+     * Gets the client used for watches. Its connections have no read timeout as a watch can be idle until the watched
+     * resource changes. Starting a watch counts against the run's rate limiter like any other read.
+     *
+     * @return the watch client
+     * @throws IOException if the client could not be configured
+     */
+    public synchronized ApiClient getWatchClient() throws IOException {
+
+        if (watchClient == null) {
+            watchClient = clients.newClient(Collections.singletonList(rateLimiter));
+            watchClient.getHttpClient().setReadTimeout(0, TimeUnit.SECONDS);
+        }
+        return watchClient;
+    }
+
+    /**
+     * Gets a component shared by all actions of the run, creating it on first use. Shared components which are
+     * {@link AutoCloseable} are closed with the context.
+     *
+     * @param <S>     the type of the component
+     * @param key     the key identifying the component
+     * @param factory creates the component if it does not exist yet
+     * @return the component
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <S> S getShared(String key, Supplier<S> factory) {
+
+        return (S) shared.computeIfAbsent(key, k -> factory.get());
+    }
+
+    @Override
+    public void close() {
+
+        synchronized (this) {
+            for (Object component : shared.values()) {
+                if (!(component instanceof AutoCloseable)) {
+                    continue;
+                }
+                try {
+                    ((AutoCloseable) component).close();
+                } catch (Exception e) {
+                    //shutting down anyway
+                }
+            }
+            shared.clear();
+        }
+        scheduler.shutdownNow();
+        watchExecutor.shutdownNow();
+        clients.close();
+    }
+}
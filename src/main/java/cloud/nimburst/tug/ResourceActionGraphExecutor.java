@@ -1,6 +1,7 @@
 package cloud.nimburst.tug;
 
 import cloud.nimburst.tug.TugManifest.Deployment;
+import cloud.nimburst.tug.TugManifest.Milestone;
 import cloud.nimburst.tug.actions.ClusterRoleBindingAction;
 import cloud.nimburst.tug.actions.ConfigMapResourceAction;
 import cloud.nimburst.tug.actions.DeploymentResourceAction;
@@ -9,91 +10,358 @@ import cloud.nimburst.tug.actions.JobResourceAction;
 import cloud.nimburst.tug.actions.NamespaceResourceAction;
 import cloud.nimburst.tug.actions.PodResourceAction;
 import cloud.nimburst.tug.actions.ServiceResourceAction;
+import cloud.nimburst.tug.client.AdaptiveLimit;
 import com.fasterxml.jackson.databind.JsonNode;
+import io.kubernetes.client.Configuration;
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.graph.DirectedAcyclicGraph;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Executes {@link ResourceAction}s.
+ * <p>
+ * The dependency graph is only used to select the resources to act on. Scheduling is driven by a per resource count of
+ * unfinished predecessors which is decremented as each predecessor completes, so a completion only touches its direct
+ * successors and never takes a lock.
+ * <p>
+ * A dependency can be on the dependency being created rather than ready. The dependents of such an edge are counted
+ * down as soon as the action reports that its resource exists, while it goes on waiting for readiness. Deletion always
+ * waits for dependents to be gone.
+ * <p>
+ * Each resource holds an execution slot only while its action is issuing API calls; waiting for the resource to
+ * become ready or go away happens on the context scheduler, so the concurrency bounds API work rather than waits.
+ * <p>
+ * Ready resources wait for an execution slot in a priority queue. With {@link SchedulingOrder#CRITICAL_PATH} the
+ * resource with the heaviest chain of work waiting on it goes first, where each resource weighs its duration from the
+ * last run, or one second if it has none.
+ * <p>
+ * Optional limits cap the number of resources of a kind, or in a namespace, issuing API calls at once. A resource is
+ * only started once it can take a permit of each limit that applies to it, and returns them as soon as its action has
+ * nothing left to do but wait, so that a resource waiting on another of the same kind never holds it back; until then
+ * it is parked without holding an execution slot.
+ * <p>
+ * With adaptive concurrency the number of resources issuing API calls at once is further capped by the context's
+ * {@link AdaptiveLimit}, which follows the latency and throttling of the API server. Parked resources are tried again
+ * whenever the limit grows.
+ * <p>
+ * With namespace cascade, a Namespace being deleted along with resources in it is deleted straight away and the
+ * cluster removes its contents. The resources in it complete once the Namespace is gone, without API calls of their
+ * own. This only applies when nothing outside the Namespace and its contents depends on them.
+ * <p>
+ * A deleted resource which nothing else is deleted or created after can be left to go away on its own once its
+ * deletion is accepted, if waiting for deletions is turned off for it.
+ * <p>
+ * Before anything is scheduled, the existence of all selected resources is looked up with one list call per snapshot
+ * group, usually a kind and namespace, made in parallel, so resources which are already present cost no calls of their
+ * own to discover. Groups with nothing to create only list what exists, without the resources' spec and status.
  */
 public class ResourceActionGraphExecutor {
 
-    private final DirectedAcyclicGraph<DeploymentAction, DefaultEdge> dag = new DirectedAcyclicGraph<>(DefaultEdge.class);
-    private final Set<DeploymentAction> processing = new HashSet<>();
-    private final Set<DeploymentAction> initial;
-    private final Map<String, DeploymentAction> deploymentActions;
+    private static final long DEFAULT_DURATION_MILLIS = 1000L;
+    private static final String DURATION_HISTORY = ".tug/durations";
+    private static final String APPLY_STATE = ".tug/state";
+
+    private final List<DeploymentAction> initial;
+    private final Set<DeploymentAction> selected;
     private final List<CompletableFuture<?>> futures;
-    private final ExecutorService executor;
-    private final Path configRoot;
-    private final ResourceActionDirection dir;
-    private Exception exception;
+    private final ThreadPoolExecutor executor;
+    private final int parallelism;
+    private final SchedulingOrder order;
+    private final DurationHistory history;
+    private final ApplyState state;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Semaphore> kindLimits = new HashMap<>();
+    private final Map<String, Semaphore> namespaceLimits = new HashMap<>();
+    private final List<DeploymentAction> parked = new ArrayList<>();
+    private final AdaptiveLimit adaptiveLimit;
+    private final Runnable wakeParked = this::wakeParked;
+    private final boolean deleteWait;
+    private final boolean createFollows;
+    private volatile Throwable exception;
     private CompletableFuture<?> all;
 
     /**
      * Instantiates a new ResourceActionGraphExecutors.
      *
-     * @param direction   create or delete
-     * @param parallelism max number of concurrent actions
-     * @param configRoot  the directory containing the manifest
-     * @param manifest    the manifest
-     * @param resources   the resources specified on the command line or an empty list for all defined in the manifest
+     * @param direction  create or delete
+     * @param context    the shared context of the run
+     * @param configRoot the directory containing the manifest
+     * @param manifest   the manifest
+     * @param resources  the resources specified on the command line or an empty list for all defined in the manifest
      */
-    public ResourceActionGraphExecutor(ResourceActionDirection direction, int parallelism, Path configRoot, TugManifest manifest, List<String> resources) {
-
-        this.dir = direction;
-        this.configRoot = configRoot;
-        executor = Executors.newWorkStealingPool(parallelism);
-        deploymentActions = manifest.getDeployments().stream()
-                .map(this::deploymentToAction)
-                .collect(Collectors.toMap(da -> da.getDeployment().getName(), Function.identity()));
-
-        deploymentActions.values().forEach(dag::addVertex);
-        deploymentActions.values().forEach(
-                da -> da.getDeployment().getDependencies().forEach(dep -> dag.addEdge(da, deploymentActions.get(dep))));
-
-        if (!resources.isEmpty()) {
-            Set<DeploymentAction> toKeep = resources.stream()
-                    .map(deploymentActions::get)
-                    .flatMap(da -> (dir == ResourceActionDirection.CREATE ? dag.getDescendants(da) : dag.getAncestors(da)).stream())
-                    .collect(Collectors.toCollection(HashSet::new));
-            toKeep.addAll(resources.stream()
-                    .map(deploymentActions::get)
-                    .collect(Collectors.toCollection(HashSet::new)));
+    public ResourceActionGraphExecutor(ResourceActionDirection direction, ResourceActionContext context, Path configRoot, TugManifest manifest, List<String> resources) {
+
+        this(EnumSet.of(direction), context, configRoot, manifest, resources);
+    }
+
+    /**
+     * Instantiates a new ResourceActionGraphExecutors. When given both directions, all resources are acted on in a
+     * single graph: a resource is recreated as soon as its own deletion and the creation of its dependencies are done,
+     * without waiting for unrelated deletions.
+     *
+     * @param directions create, delete or both
+     * @param context    the shared context of the run
+     * @param configRoot the directory containing the manifest
+     * @param manifest   the manifest
+     * @param resources  the resources specified on the command line or an empty list for all defined in the manifest
+     */
+    public ResourceActionGraphExecutor(Set<ResourceActionDirection> directions, ResourceActionContext context, Path configRoot, TugManifest manifest, List<String> resources) {
 
-            futures = toKeep.stream().map(DeploymentAction::getFuture).collect(Collectors.toList());
+        this(directions, context, configRoot, manifest, resources, false);
+    }
 
-            Set<DeploymentAction> toRemove = new HashSet<>(deploymentActions.values());
-            toRemove.removeAll(toKeep);
+    /**
+     * Instantiates a new ResourceActionGraphExecutors, for a deletion which a separate run creating the resources again
+     * follows. Deleted resources are then always waited for until they are gone, so that the creation does not find
+     * them still terminating.
+     *
+     * @param directions    create, delete or both
+     * @param context       the shared context of the run
+     * @param configRoot    the directory containing the manifest
+     * @param manifest      the manifest
+     * @param resources     the resources specified on the command line or an empty list for all defined in the manifest
+     * @param createFollows whether a creation of the resources follows this run
+     */
+    public ResourceActionGraphExecutor(Set<ResourceActionDirection> directions, ResourceActionContext context, Path configRoot, TugManifest manifest, List<String> resources,
+                                       boolean createFollows) {
 
-            toRemove.forEach(dag::removeVertex);
-        } else {
-            futures = deploymentActions.values().stream().map(DeploymentAction::getFuture).collect(Collectors.toList());
+        this(directions, context, manifest, resources, deployment -> deploymentToAction(configRoot, deployment, context),
+                new DurationHistory(context.getOptions().getSchedulingOrder() == SchedulingOrder.CRITICAL_PATH ? configRoot.resolve(DURATION_HISTORY) : null),
+                new ApplyState(configRoot.resolve(APPLY_STATE), configRoot, Configuration.getDefaultApiClient().getBasePath()), createFollows);
+    }
+
+    /**
+     * Instantiates a new ResourceActionGraphExecutors.
+     *
+     * @param directions    create, delete or both
+     * @param context       the shared context of the run
+     * @param manifest      the manifest
+     * @param resources     the resources specified on the command line or an empty list for all defined in the manifest
+     * @param actionFactory creates the resource action for a deployment
+     * @param history       the durations recorded by previous runs
+     * @param state         the resource configurations as last pushed
+     */
+    ResourceActionGraphExecutor(Set<ResourceActionDirection> directions, ResourceActionContext context, TugManifest manifest, List<String> resources,
+                                Function<Deployment, ResourceAction> actionFactory, DurationHistory history, ApplyState state) {
+
+        this(directions, context, manifest, resources, actionFactory, history, state, false);
+    }
+
+    /**
+     * Instantiates a new ResourceActionGraphExecutors.
+     *
+     * @param directions    create, delete or both
+     * @param context       the shared context of the run
+     * @param manifest      the manifest
+     * @param resources     the resources specified on the command line or an empty list for all defined in the manifest
+     * @param actionFactory creates the resource action for a deployment
+     * @param history       the durations recorded by previous runs
+     * @param state         the resource configurations as last pushed
+     * @param createFollows whether a creation of the resources follows this run
+     */
+    ResourceActionGraphExecutor(Set<ResourceActionDirection> directions, ResourceActionContext context, TugManifest manifest, List<String> resources,
+                                Function<Deployment, ResourceAction> actionFactory, DurationHistory history, ApplyState state, boolean createFollows) {
+
+        TugOptions options = context.getOptions();
+        this.order = options.getSchedulingOrder();
+        this.history = history;
+        this.state = state;
+        this.parallelism = options.getConcurrency();
+        this.adaptiveLimit = context.getAdaptiveLimit();
+        this.deleteWait = options.isDeleteWait();
+        this.createFollows = createFollows;
+        executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), new DaemonThreadFactory("tug-action"));
+        if (manifest.getConcurrency() != null) {
+            manifest.getConcurrency().getKinds().forEach((kind, limit) -> kindLimits.put(kind, new Semaphore(limit)));
+            manifest.getConcurrency().getNamespaces().forEach((namespace, limit) -> namespaceLimits.put(namespace, new Semaphore(limit)));
+        }
+        options.getKindConcurrency().forEach((kind, limit) -> kindLimits.put(kind, new Semaphore(limit)));
+        options.getNamespaceConcurrency().forEach((namespace, limit) -> namespaceLimits.put(namespace, new Semaphore(limit)));
+        Map<String, Deployment> deployments = manifest.getDeployments().stream()
+                .collect(Collectors.toMap(Deployment::getName, Function.identity()));
+        Map<String, ResourceAction> resourceActions = deployments.values().stream()
+                .collect(Collectors.toMap(Deployment::getName, actionFactory));
+
+        DirectedAcyclicGraph<String, DefaultEdge> dag = new DirectedAcyclicGraph<>(DefaultEdge.class);
+        deployments.keySet().forEach(dag::addVertex);
+        Map<String, Map<String, Milestone>> milestones = new HashMap<>();
+        deployments.values().forEach(deployment -> deployment.getDependencies().forEach(dep -> {
+            dag.addEdge(deployment.getName(), dep.getName());
+            milestones.computeIfAbsent(deployment.getName(), name -> new HashMap<>()).put(dep.getName(), dep.getAfter());
+        }));
+
+        Map<ResourceActionDirection, Map<String, DeploymentAction>> nodes = new EnumMap<>(ResourceActionDirection.class);
+        for (ResourceActionDirection dir : directions) {
+            Set<String> selected;
+            if (!resources.isEmpty()) {
+                selected = resources.stream()
+                        .flatMap(name -> (dir == ResourceActionDirection.CREATE ? dag.getDescendants(name) : dag.getAncestors(name)).stream())
+                        .collect(Collectors.toCollection(HashSet::new));
+                selected.addAll(resources);
+            } else {
+                selected = deployments.keySet();
+            }
+            Map<String, DeploymentAction> byName = selected.stream()
+                    .collect(Collectors.toMap(Function.identity(),
+                            name -> new DeploymentAction(deployments.get(name), resourceActions.get(name), dir)));
+
+            // an edge points from a dependent to its dependency, creation follows edges backwards and deletion forwards
+            for (DeploymentAction da : byName.values()) {
+                String name = da.getDeployment().getName();
+                Set<DefaultEdge> edges = dir == ResourceActionDirection.CREATE ? dag.incomingEdgesOf(name) : dag.outgoingEdgesOf(name);
+                for (DefaultEdge edge : edges) {
+                    DeploymentAction next = byName.get(dir == ResourceActionDirection.CREATE ? dag.getEdgeSource(edge) : dag.getEdgeTarget(edge));
+                    if (next == null) {
+                        continue;
+                    }
+                    if (dir == ResourceActionDirection.CREATE
+                            && milestones.get(dag.getEdgeSource(edge)).get(name) == Milestone.CREATED) {
+                        next.getRemaining().incrementAndGet();
+                        da.getCreatedSuccessors().add(next);
+                    } else {
+                        link(da, next);
+                    }
+                }
+            }
+            nodes.put(dir, byName);
+        }
+
+        // a resource being recreated waits for its own deletion, which in turn waits for its dependents to go
+        if (nodes.size() > 1) {
+            Map<String, DeploymentAction> deletes = nodes.get(ResourceActionDirection.DELETE);
+            nodes.get(ResourceActionDirection.CREATE).forEach((name, create) -> {
+                if (deletes.containsKey(name)) {
+                    link(deletes.get(name), create);
+                }
+            });
+        }
+
+        // resources in a Namespace being deleted go with it, unless something outside has to be deleted before them
+        if (options.isNamespaceCascade() && nodes.containsKey(ResourceActionDirection.DELETE)) {
+            cascadeNamespaces(nodes.get(ResourceActionDirection.DELETE), dag);
+        }
+
+        // unchanged resources are only looked at in the cluster when verification is asked for, or if they are recreated
+        if (!options.isVerify() && nodes.containsKey(ResourceActionDirection.CREATE)) {
+            Map<String, DeploymentAction> deletes = nodes.getOrDefault(ResourceActionDirection.DELETE, Collections.emptyMap());
+            nodes.get(ResourceActionDirection.CREATE).forEach((name, create) -> {
+                if (!deletes.containsKey(name) && state.isCurrent(create.getDeployment())) {
+                    create.setUnchanged(true);
+                }
+            });
         }
 
-        initial = new HashSet<>();
-        dag.forEach(v -> {
-            if ((dir == ResourceActionDirection.CREATE ? dag.outgoingEdgesOf(v) : dag.incomingEdgesOf(v)).isEmpty()) {
-                processing.add(v);
-                initial.add(v);
+        this.selected = nodes.values().stream()
+                .flatMap(byName -> byName.values().stream())
+                .collect(Collectors.toCollection(HashSet::new));
+        futures = selected.stream().map(DeploymentAction::getFuture).collect(Collectors.toList());
+
+        if (order == SchedulingOrder.CRITICAL_PATH) {
+            // successors must be weighed before the actions waiting on them
+            List<DeploymentAction> topological = topologicalOrder(selected);
+            Collections.reverse(topological);
+            for (DeploymentAction da : topological) {
+                long duration = history.getMillis(da.getDeployment().getName(), da.getDirection());
+                long downstream = da.getAllSuccessors().mapToLong(DeploymentAction::getWeight).max().orElse(0L);
+                da.setWeight((duration < 0 ? DEFAULT_DURATION_MILLIS : duration) + downstream);
             }
-        });
+        }
+
+        initial = selected.stream()
+                .filter(da -> da.getRemaining().get() == 0)
+                .sorted(Comparator.comparingLong(DeploymentAction::getWeight).reversed())
+                .collect(Collectors.toList());
     }
 
-    private DeploymentAction deploymentToAction(Deployment deployment) {
+    private static void link(DeploymentAction first, DeploymentAction then) {
+
+        first.getSuccessors().add(then);
+        then.getRemaining().incrementAndGet();
+    }
+
+    /**
+     * Lets each Namespace being deleted take the resources in it along, when the Namespace and its contents are only
+     * depended on by one another. The Namespace no longer waits for its contents, which complete with it instead of
+     * being deleted one by one.
+     */
+    private static void cascadeNamespaces(Map<String, DeploymentAction> deletes, DirectedAcyclicGraph<String, DefaultEdge> dag) {
+
+        for (DeploymentAction namespace : deletes.values()) {
+            String owned = namespace.getResourceAction().getOwnedNamespace();
+            if (owned == null) {
+                continue;
+            }
+            List<DeploymentAction> contents = deletes.values().stream()
+                    .filter(da -> owned.equals(da.getResourceAction().getNamespace()))
+                    .collect(Collectors.toList());
+            Set<String> covered = contents.stream()
+                    .map(da -> da.getDeployment().getName())
+                    .collect(Collectors.toCollection(HashSet::new));
+            covered.add(namespace.getDeployment().getName());
+            if (contents.isEmpty() || !covered.stream().allMatch(name -> covered.containsAll(dag.getAncestors(name)))) {
+                continue;
+            }
+            for (DeploymentAction content : contents) {
+                if (content.getSuccessors().remove(namespace)) {
+                    namespace.getRemaining().decrementAndGet();
+                }
+                content.setCascade(namespace);
+            }
+            namespace.setCascading(true);
+        }
+    }
+
+    private static List<DeploymentAction> topologicalOrder(Set<DeploymentAction> actions) {
+
+        Map<DeploymentAction, Integer> remaining = new HashMap<>();
+        actions.forEach(da -> remaining.put(da, da.getRemaining().get()));
+        Deque<DeploymentAction> ready = actions.stream()
+                .filter(da -> da.getRemaining().get() == 0)
+                .collect(Collectors.toCollection(ArrayDeque::new));
+        List<DeploymentAction> topological = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            DeploymentAction da = ready.poll();
+            topological.add(da);
+            da.getAllSuccessors().forEach(next -> {
+                if (remaining.merge(next, -1, Integer::sum) == 0) {
+                    ready.add(next);
+                }
+            });
+        }
+        return topological;
+    }
+
+    private static ResourceAction deploymentToAction(Path configRoot, Deployment deployment, ResourceActionContext context) {
 
         Path location = Paths.get(deployment.getLocation());
         if (!location.isAbsolute()) {
@@ -110,33 +378,33 @@ public class ResourceActionGraphExecutor {
         ResourceAction resourceAction;
         switch (kind) {
             case "Pod":
-                resourceAction = new PodResourceAction(resource, deployment);
+                resourceAction = new PodResourceAction(resource, deployment, context);
                 break;
             case "Service":
-                resourceAction = new ServiceResourceAction(resource, deployment);
+                resourceAction = new ServiceResourceAction(resource, deployment, context);
                 break;
             case "ConfigMap":
-                resourceAction = new ConfigMapResourceAction(resource, deployment);
+                resourceAction = new ConfigMapResourceAction(resource, deployment, context);
                 break;
             case "Job":
-                resourceAction = new JobResourceAction(resource, deployment);
+                resourceAction = new JobResourceAction(resource, deployment, context);
                 break;
             case "Deployment":
-                resourceAction = new DeploymentResourceAction(resource, deployment);
+                resourceAction = new DeploymentResourceAction(resource, deployment, context);
                 break;
             case "Ingress":
-                resourceAction = new IngressResourceAction(resource, deployment);
+                resourceAction = new IngressResourceAction(resource, deployment, context);
                 break;
             case "Namespace":
-                resourceAction = new NamespaceResourceAction(resource, deployment);
+                resourceAction = new NamespaceResourceAction(resource, deployment, context);
                 break;
             case "ClusterRoleBinding":
-                resourceAction = new ClusterRoleBindingAction(resource, deployment);
+                resourceAction = new ClusterRoleBindingAction(resource, deployment, context);
                 break;
             default:
                 throw new RuntimeException("Unsupported deployment kind: " + kind);
         }
-        return new DeploymentAction(deployment, resourceAction);
+        return resourceAction;
     }
 
     /**
@@ -146,10 +414,21 @@ public class ResourceActionGraphExecutor {
     public void execute() {
 
         try {
-            initial.forEach(v -> executor.submit(() -> this.doNext(v)));
-            all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+            all = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+            takeSnapshot();
+            if (adaptiveLimit != null) {
+                adaptiveLimit.addIncreaseListener(wakeParked);
+            }
+            initial.forEach(this::schedule);
             all.join();
         } finally {
+            if (adaptiveLimit != null) {
+                adaptiveLimit.removeIncreaseListener(wakeParked);
+            }
+            if (order == SchedulingOrder.CRITICAL_PATH) {
+                history.save();
+            }
+            state.save();
             executor.shutdownNow();
             try {
                 executor.awaitTermination(60, TimeUnit.SECONDS);
@@ -159,49 +438,291 @@ public class ResourceActionGraphExecutor {
         }
     }
 
-    private Void doNext(DeploymentAction v) {
+    private void takeSnapshot() {
+
+        // a cascaded deletion never reads its snapshot, which a recreation would then find instead of the cluster
+        Set<ResourceAction> cascaded = selected.stream()
+                .filter(da -> da.getCascade() != null)
+                .map(DeploymentAction::getResourceAction)
+                .collect(Collectors.toSet());
+        Map<String, List<ResourceAction>> groups = selected.stream()
+                .filter(da -> !da.isUnchanged())
+                .map(DeploymentAction::getResourceAction)
+                .distinct()
+                .filter(action -> action.getSnapshotKey() != null && !cascaded.contains(action))
+                .collect(Collectors.groupingBy(ResourceAction::getSnapshotKey));
+        if (groups.isEmpty()) {
+            return;
+        }
+        // groups with nothing to create only need to know what exists
+        Set<ResourceAction> creating = selected.stream()
+                .filter(da -> !da.isUnchanged() && da.getDirection() == ResourceActionDirection.CREATE)
+                .map(DeploymentAction::getResourceAction)
+                .collect(Collectors.toSet());
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, groups.size()), new DaemonThreadFactory("tug-snapshot"));
+        try {
+            CompletableFuture<?>[] lists = groups.entrySet().stream()
+                    .map(group -> CompletableFuture.runAsync(() -> {
+                        try {
+                            ResourceAction first = group.getValue().get(0);
+                            Map<String, Object> snapshot = group.getValue().stream().noneMatch(creating::contains)
+                                    ? first.listExistenceSnapshot()
+                                    : first.listSnapshot();
+                            group.getValue().forEach(action -> action.useSnapshot(snapshot));
+                        } catch (ResourceActionException e) {
+                            // each resource checks for itself instead
+                            System.out.println(String.format("unable to list %s: %s", group.getKey(), e.getMessage()));
+                        }
+                    }, pool))
+                    .toArray(CompletableFuture<?>[]::new);
+            CompletableFuture.allOf(lists).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void schedule(DeploymentAction v) {
+
+        executor.execute(new ScheduledAction(v, sequence.getAndIncrement()));
+    }
+
+    private void doNext(DeploymentAction v) {
 
         if (exception != null) {
             v.getFuture().completeExceptionally(exception);
+            return;
+        }
+
+        if (v.isUnchanged()) {
+            System.out.println(v.getDeployment().getName() + " unchanged");
+            complete(v);
+            return;
         }
 
+        if (v.getCascade() != null) {
+            v.getCascade().getFuture().whenComplete((namespace, error) -> {
+                if (error != null) {
+                    v.getFuture().completeExceptionally(error);
+                    return;
+                }
+                System.out.println(v.getDeployment().getName() + " deleted with namespace " + v.getResourceAction().getNamespace());
+                state.forget(v.getDeployment());
+                complete(v);
+            });
+            return;
+        }
+
+        if (!acquire(v)) {
+            return;
+        }
 
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> result;
         try {
-            if (dir == ResourceActionDirection.CREATE) {
-                v.getResourceAction().makeReady();
+            result = v.getDirection() == ResourceActionDirection.CREATE
+                    ? v.getResourceAction().makeReady(() -> created(v))
+                    : v.getResourceAction().delete(awaitGone(v)).thenApply(deleted -> true);
+        } catch (RuntimeException e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+        } finally {
+            // the API calls are issued, waiting for the outcome does not count against any limit
+            release(v);
+        }
+
+        result.whenComplete((current, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                state.forget(v.getDeployment());
+                exception = cause;
+                v.getFuture().completeExceptionally(cause);
+                all.completeExceptionally(cause);
+                return;
+            }
+            if (v.getDirection() == ResourceActionDirection.CREATE) {
                 System.out.println(v.getDeployment().getName() + " ready");
+                // a resource left differing from its configuration keeps whatever was last recorded for it
+                if (current) {
+                    state.record(v.getDeployment());
+                }
             } else {
-                v.getResourceAction().delete();
                 System.out.println(v.getDeployment().getName() + " deleted");
+                state.forget(v.getDeployment());
             }
-            v.getFuture().complete(v);
-            synchronized (dag) {
-                dag.removeVertex(v);
-                dag.forEach(nextV -> {
-                    if (!processing.contains(nextV) && (dir == ResourceActionDirection.CREATE ? dag.outgoingEdgesOf(nextV) : dag.incomingEdgesOf(nextV)).isEmpty()) {
-                        processing.add(nextV);
-                        executor.submit(() -> this.doNext(nextV));
-                    }
-                });
+            history.record(v.getDeployment().getName(), v.getDirection(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            complete(v);
+        });
+    }
+
+    /**
+     * Whether to wait for a deleted resource to be gone. Only a resource which nothing follows, not even its own
+     * creation in this or a later run, may skip the wait, if the manifest or else the command line says so.
+     */
+    private boolean awaitGone(DeploymentAction v) {
+
+        if (createFollows || !v.isLeaf()) {
+            return true;
+        }
+        Boolean wait = v.getDeployment().getDeletion().getWait();
+        return wait == null ? deleteWait : wait;
+    }
+
+    /**
+     * Takes a permit of each limit applying to a resource, or parks the resource if any of them has none left.
+     */
+    private boolean acquire(DeploymentAction v) {
+
+        Semaphore kind = v.getResourceAction().getKind() == null ? null : kindLimits.get(v.getResourceAction().getKind());
+        Semaphore namespace = v.getResourceAction().getNamespace() == null ? null : namespaceLimits.get(v.getResourceAction().getNamespace());
+        synchronized (parked) {
+            if (kind != null && !kind.tryAcquire()) {
+                parked.add(v);
+                return false;
+            }
+            if (namespace != null && !namespace.tryAcquire()) {
+                if (kind != null) {
+                    kind.release();
+                }
+                parked.add(v);
+                return false;
+            }
+            if (adaptiveLimit != null && !adaptiveLimit.tryAcquire()) {
+                if (kind != null) {
+                    kind.release();
+                }
+                if (namespace != null) {
+                    namespace.release();
+                }
+                parked.add(v);
+                return false;
             }
-        } catch (Exception e) {
-            exception = e;
-            v.getFuture().completeExceptionally(e);
-            all.completeExceptionally(e);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the permits of a resource whose API calls are issued and puts the parked resources back in the queue to
+     * try again.
+     */
+    private void release(DeploymentAction v) {
+
+        Semaphore kind = v.getResourceAction().getKind() == null ? null : kindLimits.get(v.getResourceAction().getKind());
+        Semaphore namespace = v.getResourceAction().getNamespace() == null ? null : namespaceLimits.get(v.getResourceAction().getNamespace());
+        synchronized (parked) {
+            if (kind != null) {
+                kind.release();
+            }
+            if (namespace != null) {
+                namespace.release();
+            }
+            if (adaptiveLimit != null) {
+                adaptiveLimit.release();
+            }
+        }
+        wakeParked();
+    }
+
+    /**
+     * Puts the parked resources back in the queue to try again.
+     */
+    private void wakeParked() {
+
+        List<DeploymentAction> waking;
+        synchronized (parked) {
+            waking = new ArrayList<>(parked);
+            parked.clear();
+        }
+        waking.forEach(this::schedule);
+    }
+
+    /**
+     * Starts the resources which only wait for a resource to exist, unless it was already reported.
+     */
+    private void created(DeploymentAction v) {
+
+        if (!v.markCreated()) {
+            return;
+        }
+        for (DeploymentAction next : v.getCreatedSuccessors()) {
+            if (next.getRemaining().decrementAndGet() == 0) {
+                schedule(next);
+            }
+        }
+    }
+
+    private void complete(DeploymentAction v) {
+
+        created(v);
+        v.getFuture().complete(v);
+        for (DeploymentAction next : v.getSuccessors()) {
+            if (next.getRemaining().decrementAndGet() == 0) {
+                schedule(next);
+            }
+        }
+    }
+
+    /**
+     * A ready resource waiting in the priority queue for an execution slot.
+     */
+    private final class ScheduledAction implements Runnable, Comparable<ScheduledAction> {
+
+        private final DeploymentAction action;
+        private final long sequence;
+
+        private ScheduledAction(DeploymentAction action, long sequence) {
+
+            this.action = action;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+
+            doNext(action);
+        }
+
+        @Override
+        public int compareTo(ScheduledAction o) {
+
+            if (order == SchedulingOrder.CRITICAL_PATH && action.getWeight() != o.action.getWeight()) {
+                return Long.compare(o.action.getWeight(), action.getWeight());
+            }
+            return Long.compare(sequence, o.sequence);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            return o instanceof ScheduledAction && compareTo((ScheduledAction) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+
+            return Long.hashCode(sequence);
         }
-        return null;
     }
 
     private static class DeploymentAction {
 
         private final Deployment deployment;
         private final ResourceAction resourceAction;
+        private final ResourceActionDirection direction;
         private final CompletableFuture<DeploymentAction> future;
+        private final List<DeploymentAction> successors = new ArrayList<>();
+        private final List<DeploymentAction> createdSuccessors = new ArrayList<>();
+        private final AtomicBoolean created = new AtomicBoolean();
+        private final AtomicInteger remaining = new AtomicInteger();
+        private long weight;
+        private boolean unchanged;
+        private DeploymentAction cascade;
+        private boolean cascading;
 
-        private DeploymentAction(Deployment deployment, ResourceAction resourceAction) {
+        private DeploymentAction(Deployment deployment, ResourceAction resourceAction, ResourceActionDirection direction) {
 
             this.deployment = deployment;
             this.resourceAction = resourceAction;
+            this.direction = direction;
             this.future = new CompletableFuture<>();
         }
 
@@ -213,10 +734,94 @@ public class ResourceActionGraphExecutor {
             return resourceAction;
         }
 
+        private ResourceActionDirection getDirection() {
+            return direction;
+        }
+
         private CompletableFuture<DeploymentAction> getFuture() {
             return future;
         }
 
+        /**
+         * The resources which can only start once this one has completed.
+         */
+        private List<DeploymentAction> getSuccessors() {
+            return successors;
+        }
+
+        /**
+         * The resources which can start once this one has been created.
+         */
+        private List<DeploymentAction> getCreatedSuccessors() {
+            return createdSuccessors;
+        }
+
+        private Stream<DeploymentAction> getAllSuccessors() {
+            return Stream.concat(successors.stream(), createdSuccessors.stream());
+        }
+
+        /**
+         * Marks the resource as created.
+         *
+         * @return true if it was not marked before
+         */
+        private boolean markCreated() {
+            return created.compareAndSet(false, true);
+        }
+
+        /**
+         * The number of predecessors which have not yet completed, or been created for those only waited on until then.
+         */
+        private AtomicInteger getRemaining() {
+            return remaining;
+        }
+
+        /**
+         * The critical path weight, the duration of this resource and its heaviest chain of successors.
+         */
+        private long getWeight() {
+            return weight;
+        }
+
+        private void setWeight(long weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * Whether the resource is unchanged since it was last pushed and can be skipped.
+         */
+        private boolean isUnchanged() {
+            return unchanged;
+        }
+
+        private void setUnchanged(boolean unchanged) {
+            this.unchanged = unchanged;
+        }
+
+        /**
+         * The deletion of the Namespace which takes this resource along, or null if it is deleted on its own.
+         */
+        private DeploymentAction getCascade() {
+            return cascade;
+        }
+
+        private void setCascade(DeploymentAction cascade) {
+            this.cascade = cascade;
+        }
+
+        private void setCascading(boolean cascading) {
+            this.cascading = cascading;
+        }
+
+        /**
+         * Whether nothing waits for the resource to be gone: no other resource is deleted or created after it,
+         * including the resource itself when it is recreated, and as a Namespace, it takes no resources along which
+         * complete with it.
+         */
+        private boolean isLeaf() {
+            return successors.isEmpty() && createdSuccessors.isEmpty() && !cascading;
+        }
+
         @Override
         public boolean equals(Object o) {
 
@@ -230,7 +835,7 @@ public class ResourceActionGraphExecutor {
                 return false;
             }
             DeploymentAction that = (DeploymentAction) o;
-            return Objects.equals(deployment.getName(), that.deployment.getName());
+            return Objects.equals(deployment.getName(), that.deployment.getName()) && direction == that.direction;
         }
 
         @Override
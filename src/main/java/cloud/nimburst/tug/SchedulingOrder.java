@@ -0,0 +1,15 @@
+package cloud.nimburst.tug;
+
+/**
+ * The order in which ready resources are given an execution slot.
+ */
+public enum SchedulingOrder {
+    /**
+     * Resources are started in the order they become ready.
+     */
+    FIFO,
+    /**
+     * Resources with the longest chain of work waiting on them are started first.
+     */
+    CRITICAL_PATH
+}
@@ -0,0 +1,21 @@
+package cloud.nimburst.tug;
+
+/**
+ * Where resource actions observe the state of their resources while waiting on them.
+ */
+public enum StatusSource {
+    /**
+     * All resources waited on in a kind and namespace are listed together from the API server once a second, for when
+     * watches are not available.
+     */
+    POLL,
+    /**
+     * Each resource is watched and reacts to changes as the API server reports them, polling only if the watch breaks.
+     */
+    WATCH,
+    /**
+     * Resources are read from a cache shared by all resources of the same kind and namespace, kept current by a single
+     * watch each.
+     */
+    INFORMER
+}
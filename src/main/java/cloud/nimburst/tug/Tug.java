@@ -1,12 +1,14 @@
 package cloud.nimburst.tug;
 
-import io.kubernetes.client.ApiClient;
 import io.kubernetes.client.Configuration;
-import io.kubernetes.client.util.Config;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Parses the manifest and command line parameters and executes the resource actions.
@@ -14,66 +16,93 @@ import java.util.List;
 public class Tug {
 
     private final TugAction action;
+    private final Path manifestPath;
     private final Path configRoot;
-    private final TugManifest manifest;
     private final List<String> resources;
-    private final int parallelism;
+    private final TugOptions options;
 
     /**
      * Instantiates a new Tug.
      *
-     * @param parallelism max number of concurrent actions
      * @param action       the action to perform on the cluster
      * @param manifestPath the path to the manifest file
-     * @param resources   the resources specified on the command line or an empty list for all defined in the manifest
+     * @param resources    the resources specified on the command line or an empty list for all defined in the manifest
+     * @param options      the execution options
      */
-    public Tug(int parallelism, TugAction action, Path manifestPath, List<String> resources) {
+    public Tug(TugAction action, Path manifestPath, List<String> resources, TugOptions options) {
 
-        this.parallelism = parallelism;
+        this.options = options;
         this.action = action;
         this.resources = resources;
+        this.manifestPath = manifestPath;
         configRoot = manifestPath.toAbsolutePath().getParent();
-        manifest = YamlParser.parseYaml(manifestPath, TugManifest.class, true);
-
-        try {
-            ApiClient client = Config.defaultClient();
-            Configuration.setDefaultApiClient(client);
-        } catch (IOException e) {
-            throw new RuntimeException("Unable to configure k8s client", e);
-        }
     }
 
     /**
-     * Execute the resource actions
+     * Parses the manifest and executes the resource actions. The client is configured and connects to the API server
+     * while the manifest is parsed.
      */
     public void execute() {
 
-        switch (action) {
-            case PUSH:
-                doAction(ResourceActionDirection.CREATE);
-                break;
-            case PULL:
-                doAction(ResourceActionDirection.DELETE);
-                break;
-            case REPUSH:
-                doAction(ResourceActionDirection.DELETE);
-                doAction(ResourceActionDirection.CREATE);
-                break;
-            default:
-                throw new RuntimeException("Invalid action: " + action);
+        try (ResourceActionContext context = new ResourceActionContext(options)) {
+            CompletableFuture<Void> prewarmed = CompletableFuture.runAsync(() -> {
+                try {
+                    Configuration.setDefaultApiClient(context.getApiClient());
+                    context.prewarm();
+                } catch (IOException e) {
+                    throw new RuntimeException("Unable to configure k8s client", e);
+                }
+            }, context.getScheduler());
+            TugManifest manifest = YamlParser.parseYaml(manifestPath, TugManifest.class, true);
+            try {
+                prewarmed.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+            switch (action) {
+                case PUSH:
+                    doAction(ResourceActionDirection.CREATE, context, manifest);
+                    break;
+                case PULL:
+                    doAction(ResourceActionDirection.DELETE, context, manifest);
+                    break;
+                case REPUSH:
+                    if (options.isPipelinedRepush()) {
+                        doAction(EnumSet.allOf(ResourceActionDirection.class), context, manifest, false);
+                    } else {
+                        doAction(EnumSet.of(ResourceActionDirection.DELETE), context, manifest, true);
+                        doAction(ResourceActionDirection.CREATE, context, manifest);
+                    }
+                    break;
+                default:
+                    throw new RuntimeException("Invalid action: " + action);
+            }
+            if (context.getAdaptiveLimit() != null) {
+                System.out.println("concurrency limit over time: " + context.getAdaptiveLimit().report());
+            }
+            if (context.getPayloadStats().hasMetadataLists()) {
+                System.out.println(context.getPayloadStats().report());
+            }
         }
     }
 
-    private void doAction(ResourceActionDirection dir) {
+    private void doAction(ResourceActionDirection dir, ResourceActionContext context, TugManifest manifest) {
+
+        doAction(EnumSet.of(dir), context, manifest, false);
+    }
+
+    private void doAction(Set<ResourceActionDirection> dirs, ResourceActionContext context, TugManifest manifest, boolean createFollows) {
 
-        if (dir == ResourceActionDirection.CREATE) {
+        if (dirs.size() > 1) {
+            System.out.println("\uD83D\uDEA2 Pulling containers out to sea and back into port ... \uD83D\uDEA2");
+        } else if (dirs.contains(ResourceActionDirection.CREATE)) {
             System.out.println("\uD83D\uDEA2 Pushing containers into port ... \uD83D\uDEA2");
         } else {
             System.out.println("\uD83D\uDEA2 Pulling containers out to sea ... \uD83D\uDEA2");
         }
 
         try {
-            new ResourceActionGraphExecutor(dir, parallelism, configRoot, manifest, resources)
+            new ResourceActionGraphExecutor(dirs, context, configRoot, manifest, resources, createFollows)
                     .execute();
             System.out.println("\uD83D\uDEA2 Toot Toot! \uD83D\uDEA2");
         } catch (Exception e) {
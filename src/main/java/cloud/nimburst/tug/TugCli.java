@@ -9,6 +9,8 @@ import org.apache.commons.cli.ParseException;
 
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * The type command line interface for Tug.
@@ -16,7 +18,7 @@ import java.util.Arrays;
 public class TugCli
 {
 
-    private static final String TOOL = "tug [-push|-pull|-repush] ?[-m <manifest>] ?[-c concurrency] [-a|-r <resources>]";
+    private static final String TOOL = "tug [-push ?[-u] ?[-verify] ?[-label]|-pull ?[-cascade]|-repush ?[-pipelined] ?[-cascade]] ?[-m <manifest>] ?[-c concurrency ?[-adaptive]] ?[-kc kind=limit,...] ?[-nc namespace=limit,...] ?[-rq qps] ?[-rb burst] ?[-mq qps] ?[-mb burst] ?[-o order] ?[-s status-source ?[-ps selector]] ?[-mw max-watches] ?[-rc read-consistency] ?[-proto] ?[-dp propagation] ?[-dg seconds] ?[-nowait] [-a|-r <resources>]";
 
     private static Options buildOptions() {
         Options options = new Options();
@@ -35,6 +37,31 @@ public class TugCli
                 .desc("update resources and dependencies in the cluster")
                 .hasArg(false)
                 .build());
+        options.addOption(Option.builder("u")
+                .longOpt("update")
+                .desc("with -push, patch existing resources which differ from their configuration")
+                .hasArg(false)
+                .build());
+        options.addOption(Option.builder("verify")
+                .longOpt("verify")
+                .desc("with -push, check resources in the cluster even if their configuration is unchanged since they were last pushed")
+                .hasArg(false)
+                .build());
+        options.addOption(Option.builder("pipelined")
+                .longOpt("pipelined")
+                .desc("with -repush, recreate each resource as soon as it is removed instead of removing all resources before adding any back")
+                .hasArg(false)
+                .build());
+        options.addOption(Option.builder("label")
+                .longOpt("name-label")
+                .desc("label created resources with their name, so that resources of a kind can later be deleted together with one request")
+                .hasArg(false)
+                .build());
+        options.addOption(Option.builder("cascade")
+                .longOpt("namespace-cascade")
+                .desc("with -pull or -repush, delete a Namespace along with the resources in it instead of deleting each of them first, when nothing else depends on them")
+                .hasArg(false)
+                .build());
         options.addOption(Option.builder("r")
                 .longOpt("resource")
                 .desc("comma separated list of resources")
@@ -55,6 +82,86 @@ public class TugCli
                 .desc("the max number of concurrent resource actions, default to 6 if omitted")
                 .hasArg()
                 .build());
+        options.addOption(Option.builder("adaptive")
+                .longOpt("adaptive")
+                .desc("start from the -c concurrency and adjust the number of resources acted on at once to the latency and throttling of the API server")
+                .hasArg(false)
+                .build());
+        options.addOption(Option.builder("kc")
+                .longOpt("kind-concurrency")
+                .desc("comma separated kind=limit pairs capping the concurrent actions on each kind, overriding the manifest")
+                .hasArg()
+                .build());
+        options.addOption(Option.builder("nc")
+                .longOpt("namespace-concurrency")
+                .desc("comma separated namespace=limit pairs capping the concurrent actions in each namespace, overriding the manifest")
+                .hasArg()
+                .build());
+        options.addOption(Option.builder("rq")
+                .longOpt("read-qps")
+                .desc("the sustained rate of read requests per second to the API server, defaults to 50 if omitted")
+                .hasArg()
+                .build());
+        options.addOption(Option.builder("rb")
+                .longOpt("read-burst")
+                .desc("the number of read requests allowed in a burst above the sustained rate, defaults to 100 if omitted")
+                .hasArg()
+                .build());
+        options.addOption(Option.builder("mq")
+                .longOpt("mutating-qps")
+                .desc("the sustained rate of create, update and delete requests per second to the API server, defaults to 20 if omitted")
+                .hasArg()
+                .build());
+        options.addOption(Option.builder("mb")
+                .longOpt("mutating-burst")
+                .desc("the number of create, update and delete requests allowed in a burst above the sustained rate, defaults to 40 if omitted")
+                .hasArg()
+                .build());
+        options.addOption(Option.builder("o")
+                .longOpt("order")
+                .desc("the order ready resources are started in, fifo or critical-path, defaults to fifo if omitted")
+                .hasArg()
+                .build());
+        options.addOption(Option.builder("s")
+                .longOpt("status-source")
+                .desc("how resources are observed while waiting on them, poll, watch or informer, defaults to poll if omitted")
+                .hasArg()
+                .build());
+        options.addOption(Option.builder("mw")
+                .longOpt("max-watches")
+                .desc("with -s watch or informer, the max number of watches open at once, further waits are polled, defaults to 32 if omitted")
+                .hasArg()
+                .build());
+        options.addOption(Option.builder("ps")
+                .longOpt("poll-selector")
+                .desc("with -s poll, the label selector restricting the list polling each kind and namespace, resources without the labels are polled by name")
+                .hasArg()
+                .build());
+        options.addOption(Option.builder("rc")
+                .longOpt("read-consistency")
+                .desc("how current the reads waiting on resources must be, strong or cached, cached serves readiness and deletion polls from the API server watch cache, defaults to strong if omitted")
+                .hasArg()
+                .build());
+        options.addOption(Option.builder("dp")
+                .longOpt("delete-propagation")
+                .desc("what happens to the resources owned by a deleted resource, foreground, background or orphan, foreground waits for them to be gone too, defaults to foreground if omitted")
+                .hasArg()
+                .build());
+        options.addOption(Option.builder("dg")
+                .longOpt("delete-grace-period")
+                .desc("the seconds deleted resources are given to shut down, 0 removes them at once, defaults to the grace period of each resource if omitted")
+                .hasArg()
+                .build());
+        options.addOption(Option.builder("nowait")
+                .longOpt("no-delete-wait")
+                .desc("do not wait for deleted resources to be gone when nothing else is deleted or created after them")
+                .hasArg(false)
+                .build());
+        options.addOption(Option.builder("proto")
+                .longOpt("protobuf")
+                .desc("read resources from the API server in protobuf instead of JSON, falling back to JSON where the server does not support it")
+                .hasArg(false)
+                .build());
         options.addOption(Option.builder("help")
                 .longOpt("help")
                 .desc("print this help message")
@@ -124,9 +231,163 @@ public class TugCli
             }
         }
 
+        if(cmd.hasOption("kc") && parseLimits(cmd.getOptionValue("kc")) == null) {
+            return "kind concurrency must be a list of kind=limit pairs with limits greater than zero";
+        }
+        if(cmd.hasOption("nc") && parseLimits(cmd.getOptionValue("nc")) == null) {
+            return "namespace concurrency must be a list of namespace=limit pairs with limits greater than zero";
+        }
+
+        for (String rate : Arrays.asList("rq", "mq")) {
+            if(cmd.hasOption(rate)) {
+                double qps;
+                try {
+                    qps = Double.parseDouble(cmd.getOptionValue(rate));
+                } catch (NumberFormatException e) {
+                    return "qps must be a number";
+                }
+                if(!(qps > 0)) {
+                    return "qps must be greater than zero";
+                }
+            }
+        }
+        for (String burst : Arrays.asList("rb", "mb")) {
+            if(cmd.hasOption(burst)) {
+                int b;
+                try {
+                    b = Integer.parseInt(cmd.getOptionValue(burst));
+                } catch (NumberFormatException e) {
+                    return "burst must be an integer";
+                }
+                if(b <= 0) {
+                    return "burst must be greater than zero";
+                }
+            }
+        }
+
+        String order = cmd.hasOption("o") ? cmd.getOptionValue("o") : null;
+        if(order != null && parseOrder(order) == null) {
+            return "order must be fifo or critical-path";
+        }
+
+        String statusSource = cmd.hasOption("s") ? cmd.getOptionValue("s") : null;
+        if(statusSource != null && parseStatusSource(statusSource) == null) {
+            return "status source must be informer, watch or poll";
+        }
+
+        String maxWatches = cmd.hasOption("mw") ? cmd.getOptionValue("mw") : null;
+        if(maxWatches != null) {
+            int w;
+            try {
+                w = Integer.parseInt(maxWatches);
+            } catch (NumberFormatException e) {
+                return "max watches must be an integer";
+            }
+            if(w <= 0) {
+                return "max watches must be greater than zero";
+            }
+        }
+
+        String readConsistency = cmd.hasOption("rc") ? cmd.getOptionValue("rc") : null;
+        if(readConsistency != null && parseReadConsistency(readConsistency) == null) {
+            return "read consistency must be strong or cached";
+        }
+
+        String propagation = cmd.hasOption("dp") ? cmd.getOptionValue("dp") : null;
+        if(propagation != null && parsePropagationPolicy(propagation) == null) {
+            return "delete propagation must be foreground, background or orphan";
+        }
+
+        String gracePeriod = cmd.hasOption("dg") ? cmd.getOptionValue("dg") : null;
+        if(gracePeriod != null) {
+            int seconds;
+            try {
+                seconds = Integer.parseInt(gracePeriod);
+            } catch (NumberFormatException e) {
+                return "delete grace period must be an integer";
+            }
+            if(seconds < 0) {
+                return "delete grace period must not be negative";
+            }
+        }
+
         return "";
     }
 
+    private static Map<String, Integer> parseLimits(String limits) {
+
+        Map<String, Integer> parsed = new HashMap<>();
+        for (String pair : limits.split(",")) {
+            String[] parts = pair.split("=");
+            if (parts.length != 2 || parts[0].trim().isEmpty()) {
+                return null;
+            }
+            int limit;
+            try {
+                limit = Integer.parseInt(parts[1].trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (limit <= 0) {
+                return null;
+            }
+            parsed.put(parts[0].trim(), limit);
+        }
+        return parsed;
+    }
+
+    private static SchedulingOrder parseOrder(String order) {
+
+        switch (order) {
+            case "fifo":
+                return SchedulingOrder.FIFO;
+            case "critical-path":
+                return SchedulingOrder.CRITICAL_PATH;
+            default:
+                return null;
+        }
+    }
+
+    private static StatusSource parseStatusSource(String statusSource) {
+
+        switch (statusSource) {
+            case "watch":
+                return StatusSource.WATCH;
+            case "informer":
+                return StatusSource.INFORMER;
+            case "poll":
+                return StatusSource.POLL;
+            default:
+                return null;
+        }
+    }
+
+    private static ReadConsistency parseReadConsistency(String readConsistency) {
+
+        switch (readConsistency) {
+            case "strong":
+                return ReadConsistency.STRONG;
+            case "cached":
+                return ReadConsistency.CACHED;
+            default:
+                return null;
+        }
+    }
+
+    private static PropagationPolicy parsePropagationPolicy(String propagation) {
+
+        switch (propagation) {
+            case "foreground":
+                return PropagationPolicy.FOREGROUND;
+            case "background":
+                return PropagationPolicy.BACKGROUND;
+            case "orphan":
+                return PropagationPolicy.ORPHAN;
+            default:
+                return null;
+        }
+    }
+
     /**
      * The entry point of application.
      *
@@ -155,14 +416,77 @@ public class TugCli
             String manifest = cmd.hasOption("m") ? cmd.getOptionValue("m") : "tug-manifest.yaml";
             String[] resources = cmd.hasOption("r") ? cmd.getOptionValues("r") : new String[0];
             String concurrency = cmd.hasOption("c") ? cmd.getOptionValue("c") : null;
-            int parallelism = 6;
+            TugOptions tugOptions = new TugOptions();
             if(concurrency != null) {
-                parallelism = Integer.parseInt(concurrency);
+                tugOptions.setConcurrency(Integer.parseInt(concurrency));
+            }
+            if(cmd.hasOption("adaptive")) {
+                tugOptions.setAdaptiveConcurrency(true);
+            }
+            if(cmd.hasOption("kc")) {
+                tugOptions.setKindConcurrency(parseLimits(cmd.getOptionValue("kc")));
+            }
+            if(cmd.hasOption("nc")) {
+                tugOptions.setNamespaceConcurrency(parseLimits(cmd.getOptionValue("nc")));
+            }
+            if(cmd.hasOption("rq")) {
+                tugOptions.setReadQps(Double.parseDouble(cmd.getOptionValue("rq")));
+            }
+            if(cmd.hasOption("rb")) {
+                tugOptions.setReadBurst(Integer.parseInt(cmd.getOptionValue("rb")));
+            }
+            if(cmd.hasOption("mq")) {
+                tugOptions.setMutatingQps(Double.parseDouble(cmd.getOptionValue("mq")));
+            }
+            if(cmd.hasOption("mb")) {
+                tugOptions.setMutatingBurst(Integer.parseInt(cmd.getOptionValue("mb")));
+            }
+            if(cmd.hasOption("o")) {
+                tugOptions.setSchedulingOrder(parseOrder(cmd.getOptionValue("o")));
+            }
+            if(cmd.hasOption("u")) {
+                tugOptions.setUpdate(true);
+            }
+            if(cmd.hasOption("verify")) {
+                tugOptions.setVerify(true);
+            }
+            if(cmd.hasOption("pipelined")) {
+                tugOptions.setPipelinedRepush(true);
+            }
+            if(cmd.hasOption("cascade")) {
+                tugOptions.setNamespaceCascade(true);
+            }
+            if(cmd.hasOption("label")) {
+                tugOptions.setNameLabel(true);
+            }
+            if(cmd.hasOption("s")) {
+                tugOptions.setStatusSource(parseStatusSource(cmd.getOptionValue("s")));
+            }
+            if(cmd.hasOption("mw")) {
+                tugOptions.setMaxWatches(Integer.parseInt(cmd.getOptionValue("mw")));
+            }
+            if(cmd.hasOption("rc")) {
+                tugOptions.setReadConsistency(parseReadConsistency(cmd.getOptionValue("rc")));
+            }
+            if(cmd.hasOption("proto")) {
+                tugOptions.setProtobuf(true);
+            }
+            if(cmd.hasOption("dp")) {
+                tugOptions.setPropagationPolicy(parsePropagationPolicy(cmd.getOptionValue("dp")));
+            }
+            if(cmd.hasOption("dg")) {
+                tugOptions.setGracePeriodSeconds(Integer.parseInt(cmd.getOptionValue("dg")));
+            }
+            if(cmd.hasOption("nowait")) {
+                tugOptions.setDeleteWait(false);
+            }
+            if(cmd.hasOption("ps")) {
+                tugOptions.setPollLabelSelector(cmd.getOptionValue("ps"));
             }
 
             //TODO valiate manifest exists
 
-            Tug tug = new Tug(parallelism, action, Paths.get(manifest), Arrays.asList(resources));
+            Tug tug = new Tug(action, Paths.get(manifest), Arrays.asList(resources), tugOptions);
             tug.execute();
         }
     }
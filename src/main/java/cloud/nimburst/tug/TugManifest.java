@@ -1,11 +1,18 @@
 package cloud.nimburst.tug;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import javax.validation.Valid;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Pattern;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 //TODO validate dependencies
@@ -15,6 +22,8 @@ import java.util.Set;
 public class TugManifest {
     @Valid
     private List<Deployment> deployments = new LinkedList<>();
+    @Valid
+    private Concurrency concurrency = new Concurrency();
 
     public List<Deployment> getDeployments() {
         return deployments;
@@ -24,15 +33,51 @@ public class TugManifest {
         this.deployments = deployments;
     }
 
+    public Concurrency getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(Concurrency concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public static class Concurrency {
+        private Map<String, @Min(1) Integer> kinds = new HashMap<>();
+        private Map<String, @Min(1) Integer> namespaces = new HashMap<>();
+
+        public Map<String, Integer> getKinds() {
+            return kinds;
+        }
+
+        public void setKinds(Map<String, Integer> kinds) {
+            this.kinds = kinds;
+        }
+
+        public Map<String, Integer> getNamespaces() {
+            return namespaces;
+        }
+
+        public void setNamespaces(Map<String, Integer> namespaces) {
+            this.namespaces = namespaces;
+        }
+    }
+
     //TODO validate file exists
     public static class Deployment {
+        private static final int DEFAULT_MAX_WAIT_SECONDS = 300;
+
         @NotBlank
         private String name;
         @Min(1)
-        private int maxWaitSeconds = 300;
+        private Integer maxWaitSeconds;
         @NotBlank
         private String location;
-        private Set<String> dependencies = new HashSet<>();
+        @Valid
+        private Set<Dependency> dependencies = new HashSet<>();
+        @Valid
+        private Readiness readiness = new Readiness();
+        @Valid
+        private Deletion deletion = new Deletion();
 
         public String getName() {
             return name;
@@ -43,13 +88,22 @@ public class TugManifest {
         }
 
         public int getMaxWaitSeconds() {
-            return maxWaitSeconds;
+            return maxWaitSeconds == null ? DEFAULT_MAX_WAIT_SECONDS : maxWaitSeconds;
         }
 
         public void setMaxWaitSeconds(int maxWaitSeconds) {
             this.maxWaitSeconds = maxWaitSeconds;
         }
 
+        /**
+         * Whether the manifest sets the maximum wait, rather than leaving it to the default.
+         *
+         * @return true if the maximum wait is set
+         */
+        public boolean hasMaxWaitSeconds() {
+            return maxWaitSeconds != null;
+        }
+
         public String getLocation() {
             return location;
         }
@@ -58,12 +112,210 @@ public class TugManifest {
             this.location = location;
         }
 
-        public Set<String> getDependencies() {
+        public Set<Dependency> getDependencies() {
             return dependencies;
         }
 
-        public void setDependencies(Set<String> dependencies) {
+        public void setDependencies(Set<Dependency> dependencies) {
             this.dependencies = dependencies;
         }
+
+        public Readiness getReadiness() {
+            return readiness;
+        }
+
+        public void setReadiness(Readiness readiness) {
+            this.readiness = readiness;
+        }
+
+        public Deletion getDeletion() {
+            return deletion;
+        }
+
+        public void setDeletion(Deletion deletion) {
+            this.deletion = deletion;
+        }
+    }
+
+    /**
+     * A dependency of a deployment on another, written as just the name of the other deployment to wait until it is
+     * ready, or as a name and the milestone to wait for.
+     */
+    public static class Dependency {
+        @NotBlank
+        private String name;
+        private Milestone after = Milestone.READY;
+
+        public Dependency() {
+        }
+
+        @JsonCreator
+        public Dependency(String name) {
+            this.name = name;
+        }
+
+        public Dependency(String name, Milestone after) {
+            this.name = name;
+            this.after = after;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Milestone getAfter() {
+            return after;
+        }
+
+        public void setAfter(Milestone after) {
+            this.after = after;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Dependency && Objects.equals(name, ((Dependency) o).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(name);
+        }
+    }
+
+    /**
+     * The point in the creation of a resource its dependents can start at.
+     */
+    public enum Milestone {
+        /**
+         * The resource exists in the cluster, enough for dependents which only refer to it, like a Pod mounting a
+         * ConfigMap.
+         */
+        @JsonProperty("created")
+        CREATED,
+        /**
+         * The resource is ready.
+         */
+        @JsonProperty("ready")
+        READY
+    }
+
+    /**
+     * Loosens when a resource counts as ready, so that its dependents can start before it is fully up.
+     */
+    public static class Readiness {
+        @Pattern(regexp = "\\d+%?", message = "must be a number of replicas or a percentage")
+        private String replicas;
+        private List<String> containers = new LinkedList<>();
+        @Pattern(regexp = "\\{(\\.[^{}]+)\\}(=.*)?", message = "must be {.path} or {.path}=value")
+        private String jsonPath;
+        private boolean endpoints;
+
+        /**
+         * For a Deployment, the number of replicas, or percentage of its desired replicas, which must be available.
+         *
+         * @return the replicas or null to wait for at least one
+         */
+        public String getReplicas() {
+            return replicas;
+        }
+
+        public void setReplicas(String replicas) {
+            this.replicas = replicas;
+        }
+
+        /**
+         * For a Pod, the containers which must be ready.
+         *
+         * @return the container names or an empty list to wait for all containers
+         */
+        public List<String> getContainers() {
+            return containers;
+        }
+
+        public void setContainers(List<String> containers) {
+            this.containers = containers;
+        }
+
+        /**
+         * For any kind, a condition on the resource as the API server returns it, replacing the readiness check of the
+         * kind: {.path} holds once the path has a value other than false, {.path}=value once its value is the one given.
+         *
+         * @return the condition or null to use the readiness check of the kind
+         */
+        public String getJsonPath() {
+            return jsonPath;
+        }
+
+        public void setJsonPath(String jsonPath) {
+            this.jsonPath = jsonPath;
+        }
+
+        /**
+         * For a Service with a selector, whether to wait for its Endpoints to have a ready address. Whatever backs the
+         * Service must then not wait for it to be ready, only created.
+         *
+         * @return true to wait for the Endpoints
+         */
+        public boolean isEndpoints() {
+            return endpoints;
+        }
+
+        public void setEndpoints(boolean endpoints) {
+            this.endpoints = endpoints;
+        }
+    }
+
+    /**
+     * Overrides how a resource is deleted, in place of the options given on the command line.
+     */
+    public static class Deletion {
+        private PropagationPolicy propagationPolicy;
+        @Min(0)
+        private Integer gracePeriodSeconds;
+        private Boolean wait;
+
+        /**
+         * What happens to the resources owned by the resource when it is deleted.
+         *
+         * @return the policy or null to use the one given on the command line
+         */
+        public PropagationPolicy getPropagationPolicy() {
+            return propagationPolicy;
+        }
+
+        public void setPropagationPolicy(PropagationPolicy propagationPolicy) {
+            this.propagationPolicy = propagationPolicy;
+        }
+
+        /**
+         * The time the resource is given to shut down gracefully, 0 to remove it at once.
+         *
+         * @return the grace period or null to use the one given on the command line
+         */
+        public Integer getGracePeriodSeconds() {
+            return gracePeriodSeconds;
+        }
+
+        public void setGracePeriodSeconds(Integer gracePeriodSeconds) {
+            this.gracePeriodSeconds = gracePeriodSeconds;
+        }
+
+        /**
+         * Whether to wait for the resource to be gone once its deletion is accepted. Resources something else is
+         * deleted or created after are always waited for.
+         *
+         * @return whether to wait or null to follow the command line
+         */
+        public Boolean getWait() {
+            return wait;
+        }
+
+        public void setWait(Boolean wait) {
+            this.wait = wait;
+        }
     }
 }
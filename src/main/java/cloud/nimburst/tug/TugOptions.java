@@ -0,0 +1,209 @@
+package cloud.nimburst.tug;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Options controlling how Tug executes resource actions.
+ */
+public class TugOptions {
+
+    private int concurrency = 6;
+    private boolean adaptiveConcurrency;
+    private SchedulingOrder schedulingOrder = SchedulingOrder.FIFO;
+    private StatusSource statusSource = StatusSource.POLL;
+    private String pollLabelSelector;
+    private int maxWatches = 32;
+    private boolean protobuf;
+    private ReadConsistency readConsistency = ReadConsistency.STRONG;
+    private boolean pipelinedRepush;
+    private boolean namespaceCascade;
+    private boolean nameLabel;
+    private PropagationPolicy propagationPolicy = PropagationPolicy.FOREGROUND;
+    private Integer gracePeriodSeconds;
+    private boolean deleteWait = true;
+    private boolean update;
+    private boolean verify;
+    private Map<String, Integer> kindConcurrency = new HashMap<>();
+    private double readQps = 50;
+    private int readBurst = 100;
+    private double mutatingQps = 20;
+    private int mutatingBurst = 40;
+    private Map<String, Integer> namespaceConcurrency = new HashMap<>();
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public boolean isAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    public void setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+        this.adaptiveConcurrency = adaptiveConcurrency;
+    }
+
+    public SchedulingOrder getSchedulingOrder() {
+        return schedulingOrder;
+    }
+
+    public void setSchedulingOrder(SchedulingOrder schedulingOrder) {
+        this.schedulingOrder = schedulingOrder;
+    }
+
+    public StatusSource getStatusSource() {
+        return statusSource;
+    }
+
+    public void setStatusSource(StatusSource statusSource) {
+        this.statusSource = statusSource;
+    }
+
+    public String getPollLabelSelector() {
+        return pollLabelSelector;
+    }
+
+    public void setPollLabelSelector(String pollLabelSelector) {
+        this.pollLabelSelector = pollLabelSelector;
+    }
+
+    public int getMaxWatches() {
+        return maxWatches;
+    }
+
+    public void setMaxWatches(int maxWatches) {
+        this.maxWatches = maxWatches;
+    }
+
+    public boolean isProtobuf() {
+        return protobuf;
+    }
+
+    public void setProtobuf(boolean protobuf) {
+        this.protobuf = protobuf;
+    }
+
+    public ReadConsistency getReadConsistency() {
+        return readConsistency;
+    }
+
+    public void setReadConsistency(ReadConsistency readConsistency) {
+        this.readConsistency = readConsistency;
+    }
+
+    public boolean isPipelinedRepush() {
+        return pipelinedRepush;
+    }
+
+    public void setPipelinedRepush(boolean pipelinedRepush) {
+        this.pipelinedRepush = pipelinedRepush;
+    }
+
+    public boolean isNamespaceCascade() {
+        return namespaceCascade;
+    }
+
+    public void setNamespaceCascade(boolean namespaceCascade) {
+        this.namespaceCascade = namespaceCascade;
+    }
+
+    public boolean isNameLabel() {
+        return nameLabel;
+    }
+
+    public void setNameLabel(boolean nameLabel) {
+        this.nameLabel = nameLabel;
+    }
+
+    public PropagationPolicy getPropagationPolicy() {
+        return propagationPolicy;
+    }
+
+    public void setPropagationPolicy(PropagationPolicy propagationPolicy) {
+        this.propagationPolicy = propagationPolicy;
+    }
+
+    public Integer getGracePeriodSeconds() {
+        return gracePeriodSeconds;
+    }
+
+    public void setGracePeriodSeconds(Integer gracePeriodSeconds) {
+        this.gracePeriodSeconds = gracePeriodSeconds;
+    }
+
+    public boolean isDeleteWait() {
+        return deleteWait;
+    }
+
+    public void setDeleteWait(boolean deleteWait) {
+        this.deleteWait = deleteWait;
+    }
+
+    public boolean isUpdate() {
+        return update;
+    }
+
+    public void setUpdate(boolean update) {
+        this.update = update;
+    }
+
+    public boolean isVerify() {
+        return verify;
+    }
+
+    public void setVerify(boolean verify) {
+        this.verify = verify;
+    }
+
+    public Map<String, Integer> getKindConcurrency() {
+        return kindConcurrency;
+    }
+
+    public void setKindConcurrency(Map<String, Integer> kindConcurrency) {
+        this.kindConcurrency = kindConcurrency;
+    }
+
+    public Map<String, Integer> getNamespaceConcurrency() {
+        return namespaceConcurrency;
+    }
+
+    public void setNamespaceConcurrency(Map<String, Integer> namespaceConcurrency) {
+        this.namespaceConcurrency = namespaceConcurrency;
+    }
+
+    public double getReadQps() {
+        return readQps;
+    }
+
+    public void setReadQps(double readQps) {
+        this.readQps = readQps;
+    }
+
+    public int getReadBurst() {
+        return readBurst;
+    }
+
+    public void setReadBurst(int readBurst) {
+        this.readBurst = readBurst;
+    }
+
+    public double getMutatingQps() {
+        return mutatingQps;
+    }
+
+    public void setMutatingQps(double mutatingQps) {
+        this.mutatingQps = mutatingQps;
+    }
+
+    public int getMutatingBurst() {
+        return mutatingBurst;
+    }
+
+    public void setMutatingBurst(int mutatingBurst) {
+        this.mutatingBurst = mutatingBurst;
+    }
+}
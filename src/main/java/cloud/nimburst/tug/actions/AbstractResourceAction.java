@@ -0,0 +1,352 @@
+package cloud.nimburst.tug.actions;
+
+import cloud.nimburst.tug.PropagationPolicy;
+import cloud.nimburst.tug.ResourceAction;
+import cloud.nimburst.tug.ResourceActionContext;
+import cloud.nimburst.tug.ResourceActionException;
+import cloud.nimburst.tug.StatusSource;
+import cloud.nimburst.tug.TugManifest;
+import com.google.gson.JsonArray;
+import io.kubernetes.client.ApiException;
+import io.kubernetes.client.models.V1DeleteOptions;
+import io.kubernetes.client.models.V1ObjectMeta;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Base {@link ResourceAction} implementing the create, wait and delete lifecycle shared by all resource kinds, on top
+ * of the reads and waits of {@link ResourceStatus}.
+ *
+ * @param <T> the model class of the resource
+ */
+public abstract class AbstractResourceAction<T> extends ResourceStatus<T> implements ResourceAction {
+
+    private static final int HTTP_UNPROCESSABLE_ENTITY = 422;
+
+    private final PropagationPolicy propagationPolicy;
+    private final Integer gracePeriodSeconds;
+    private Map<String, Object> snapshot;
+
+    /**
+     * Instantiates a new AbstractResourceAction.
+     *
+     * @param kind       the kind of the resource
+     * @param deployment the deployment configuration from the manifest
+     * @param context    the shared context of the run
+     */
+    protected AbstractResourceAction(String kind, TugManifest.Deployment deployment, ResourceActionContext context) {
+
+        super(kind, deployment, context);
+        TugManifest.Deletion deletion = deployment.getDeletion();
+        this.propagationPolicy = deletion.getPropagationPolicy() == null
+                ? context.getOptions().getPropagationPolicy()
+                : deletion.getPropagationPolicy();
+        this.gracePeriodSeconds = deletion.getGracePeriodSeconds() == null
+                ? context.getOptions().getGracePeriodSeconds()
+                : deletion.getGracePeriodSeconds();
+    }
+
+    /**
+     * Gets the resource as configured.
+     *
+     * @return the configured resource
+     */
+    protected abstract T getDesired();
+
+    /**
+     * Issues a JSON patch request for the resource.
+     *
+     * @param patch the JSON patch operations
+     * @return the patched resource
+     * @throws ApiException if the patch is rejected
+     */
+    protected abstract T patch(Object patch) throws ApiException;
+
+    /**
+     * Whether the resource may be deleted and created again when a change cannot be applied in place. Only kinds whose
+     * removal does not take other resources with it should allow this.
+     *
+     * @return true if the resource can be recreated
+     */
+    protected boolean canRecreate() {
+
+        return false;
+    }
+
+    /**
+     * Whether resources of this kind may be deleted together with a delete collection request on the list path.
+     *
+     * @return true if the API server deletes resources of this kind by collection
+     */
+    protected boolean canDeleteCollection() {
+
+        return listPath() != null;
+    }
+
+    /**
+     * Issues the create request for the resource.
+     *
+     * @throws ResourceActionException if the resource could not be created
+     */
+    protected abstract void create() throws ResourceActionException;
+
+    /**
+     * Gets the options of the delete request for the resource, with the propagation policy and grace period from the
+     * manifest or else the command line.
+     *
+     * @return the delete options
+     */
+    protected V1DeleteOptions deleteOptions() {
+
+        V1DeleteOptions options = new V1DeleteOptions().propagationPolicy(propagationPolicy.getValue());
+        return gracePeriodSeconds == null ? options : options.gracePeriodSeconds(gracePeriodSeconds.longValue());
+    }
+
+    /**
+     * Issues the delete request for the resource.
+     *
+     * @throws ResourceActionException if the resource could not be deleted
+     */
+    protected abstract void executeDelete() throws ResourceActionException;
+
+    /**
+     * Reads the resource for the first existence check of an action, answered from the existence snapshot if the
+     * executor provided one.
+     */
+    @SuppressWarnings("unchecked")
+    private T readInitial() throws ResourceActionException {
+
+        Map<String, Object> initial = snapshot;
+        if (initial != null) {
+            snapshot = null;
+            return (T) initial.get(getName());
+        }
+        return read();
+    }
+
+    /**
+     * Reads the metadata of the resource for the first existence check of a deletion, answered from the existence
+     * snapshot if the executor provided one, and otherwise from the informer cache or the metadata of the resource.
+     */
+    @SuppressWarnings("unchecked")
+    private V1ObjectMeta readInitialMetadata() throws ResourceActionException {
+
+        Map<String, Object> initial = snapshot;
+        if (initial != null) {
+            snapshot = null;
+            Object existing = initial.get(getName());
+            return existing == null || existing instanceof V1ObjectMeta ? (V1ObjectMeta) existing : getMetadata((T) existing);
+        }
+        if (getContext().getOptions().getStatusSource() == StatusSource.INFORMER) {
+            T existing = read();
+            return existing == null ? null : getMetadata(existing);
+        }
+        try {
+            return listMetadata(nameSelector(), null, false).get(getName());
+        } catch (ApiException e) {
+            throw new ResourceActionException(String.format("Unable to get %s info: %s", getKind(), e.getResponseBody()), e);
+        }
+    }
+
+    @Override
+    public String getSnapshotKey() {
+
+        return describe();
+    }
+
+    @Override
+    public Map<String, Object> listSnapshot() throws ResourceActionException {
+
+        if (getContext().getOptions().getStatusSource() == StatusSource.INFORMER) {
+            Informer<T> informer = informer();
+            try {
+                informer.synced().join();
+                return informer.snapshot();
+            } catch (CompletionException e) {
+                //the cache could not be filled, list directly
+            }
+        }
+        Listing<T> listing;
+        try {
+            listing = listResources(null, null, false);
+        } catch (ApiException e) {
+            throw new ResourceActionException(String.format("Unable to list %s: %s", getKind(), e.getResponseBody()), e);
+        }
+        Map<String, Object> resources = new HashMap<>();
+        listing.getItems().forEach(resource -> resources.put(getMetadata(resource).getName(), resource));
+        return resources;
+    }
+
+    @Override
+    public Map<String, Object> listExistenceSnapshot() throws ResourceActionException {
+
+        if (getContext().getOptions().getStatusSource() == StatusSource.INFORMER) {
+            // the cache lists whole resources anyway
+            return listSnapshot();
+        }
+        try {
+            return new HashMap<>(listMetadata(null, null, false));
+        } catch (ApiException e) {
+            throw new ResourceActionException(String.format("Unable to list %s: %s", getKind(), e.getResponseBody()), e);
+        }
+    }
+
+    @Override
+    public void useSnapshot(Map<String, Object> snapshot) {
+
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public CompletableFuture<Void> makeReady() {
+
+        return makeReady(() -> { }).thenAccept(current -> { });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> makeReady(Runnable created) {
+
+        try {
+            T existing = readInitial();
+            if (existing == null) {
+                labelName();
+                create();
+                return waitUntilCreated().thenCompose(c -> {
+                    created.run();
+                    return waitUntilReady();
+                }).thenApply(ready -> true);
+            }
+            JsonArray patch = ResourcePatch.diff(getDesired(), existing);
+            if (patch.size() > 0 && getContext().getOptions().isUpdate()) {
+                return update(patch, created).thenApply(ready -> true);
+            }
+            if (patch.size() > 0) {
+                System.out.println(String.format("%s '%s' differs from its configuration, leaving it as it is", getKind(), getName()));
+            }
+            created.run();
+            boolean current = patch.size() == 0;
+            if (ready(existing)) {
+                return CompletableFuture.completedFuture(current);
+            }
+            return waitUntilReady().thenApply(ready -> current);
+        } catch (ResourceActionException e) {
+            return failed(e);
+        }
+    }
+
+    private CompletableFuture<Void> update(JsonArray patch, Runnable created) throws ResourceActionException {
+
+        System.out.println(String.format("updating %s '%s'", getKind(), getName()));
+        T patched;
+        try {
+            patched = patch(patch);
+        } catch (ApiException e) {
+            if (e.getCode() == HTTP_UNPROCESSABLE_ENTITY && canRecreate()) {
+                System.out.println(String.format("%s '%s' cannot be updated in place, recreating", getKind(), getName()));
+                executeDelete();
+                return waitUntilDeleted().thenCompose(deleted -> {
+                    try {
+                        labelName();
+                        create();
+                    } catch (ResourceActionException ex) {
+                        return failed(ex);
+                    }
+                    return waitUntilCreated().thenCompose(c -> {
+                        created.run();
+                        return waitUntilReady();
+                    });
+                });
+            }
+            throw new ResourceActionException(String.format("Unable to update %s: %s", getKind(), e.getResponseBody()), e);
+        }
+        created.run();
+        // the cache may still hold the resource as it was before the patch, wait for the controllers to see the change
+        Long generation = patched == null ? null : getMetadata(patched).getGeneration();
+        System.out.println(String.format("waiting for %s '%s' to be ready", getKind(), getName()));
+        return waitFor(resource -> resource != null && observed(resource, generation) && ready(resource), "was not ready", true);
+    }
+
+    private boolean observed(T resource, Long generation) {
+
+        Long current = getMetadata(resource).getGeneration();
+        return generation == null || (current != null && current >= generation);
+    }
+
+    /**
+     * Labels the configured resource with its name before it is created if the options ask for it, so that it can
+     * later be deleted together with other resources of the same kind. Names too long for a label value are left
+     * unlabelled.
+     */
+    private void labelName() {
+
+        V1ObjectMeta metadata = getMetadata(getDesired());
+        if (getContext().getOptions().isNameLabel() && getName().length() <= CollectionDeleter.MAX_LABEL_VALUE_LENGTH) {
+            metadata.putLabelsItem(CollectionDeleter.NAME_LABEL, getName());
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> delete() {
+
+        return delete(true);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(boolean awaitGone) {
+
+        try {
+            V1ObjectMeta existing = readInitialMetadata();
+            if (existing == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (canDeleteCollection() && existing.getLabels() != null
+                    && getName().equals(existing.getLabels().get(CollectionDeleter.NAME_LABEL))) {
+                return collectionDeleter().delete(getName(), this::executeDelete)
+                        .thenCompose(deleted -> awaitGone ? waitUntilDeleted() : CompletableFuture.<Void>completedFuture(null));
+            }
+            executeDelete();
+            return awaitGone ? waitUntilDeleted() : CompletableFuture.completedFuture(null);
+        } catch (ResourceActionException e) {
+            return failed(e);
+        }
+    }
+
+    private CollectionDeleter collectionDeleter() {
+
+        String namespace = getNamespace() == null ? "" : getNamespace();
+        // only resources deleted with the same options can share a request
+        return getContext().getShared("deleter/" + getKind() + "/" + namespace + "/" + propagationPolicy + "/" + gracePeriodSeconds, () -> new CollectionDeleter(
+                namespace.isEmpty() ? getKind() : getKind() + " in " + namespace,
+                getApiClient(),
+                listPath(),
+                deleteOptions(),
+                getContext().getScheduler()));
+    }
+
+    /**
+     * Waits for a newly created resource to appear. The resource is never looked for in the watch cache, which may still
+     * hold an earlier resource of the same name.
+     *
+     * @return a future completed once the resource exists
+     */
+    protected CompletableFuture<Void> waitUntilCreated() {
+
+        System.out.println(String.format("waiting for %s '%s' to be created", getKind(), getName()));
+        return waitForExistence(true, "was not created", false);
+    }
+
+    /**
+     * Waits for a deleted resource to disappear.
+     *
+     * @return a future completed once the resource no longer exists
+     */
+    protected CompletableFuture<Void> waitUntilDeleted() {
+
+        System.out.println(String.format("waiting for %s '%s' to be deleted", getKind(), getName()));
+        return waitForExistence(false, "was not deleted", true);
+    }
+
+}
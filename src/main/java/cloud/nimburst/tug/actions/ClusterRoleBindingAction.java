@@ -1,116 +1,117 @@
 package cloud.nimburst.tug.actions;
 
 import cloud.nimburst.tug.ResourceAction;
+import cloud.nimburst.tug.ResourceActionContext;
 import cloud.nimburst.tug.ResourceActionException;
 import cloud.nimburst.tug.TugManifest;
 import cloud.nimburst.tug.YamlParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import com.squareup.okhttp.Call;
+import io.kubernetes.client.ApiClient;
 import io.kubernetes.client.ApiException;
 import io.kubernetes.client.apis.RbacAuthorizationV1Api;
 import io.kubernetes.client.models.V1ClusterRoleBinding;
 import io.kubernetes.client.models.V1ClusterRoleBindingList;
 import io.kubernetes.client.models.V1DeleteOptions;
+import io.kubernetes.client.models.V1ObjectMeta;
+import io.kubernetes.client.proto.V1Rbac;
+import io.kubernetes.client.util.Watch;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.lang.reflect.Type;
 
 /**
  * {@link ResourceAction} for managing a ClusterRoleBinding resource
  */
-public class ClusterRoleBindingAction implements ResourceAction {
+public class ClusterRoleBindingAction extends AbstractResourceAction<V1ClusterRoleBinding> {
+
+    private static final Type WATCH_TYPE = new TypeToken<Watch.Response<V1ClusterRoleBinding>>() {}.getType();
 
     private final V1ClusterRoleBinding clusterRoleBinding;
-    private final RbacAuthorizationV1Api api = new RbacAuthorizationV1Api();
-    private final int maxWaitSeconds;
+    private final RbacAuthorizationV1Api api;
 
     /**
      * Instantiates a new ClusterRoleBindingAction.
      *
      * @param resource   the content of the yaml resource configuration
      * @param deployment the deployment configuration from the manifest
+     * @param context    the shared context of the run
      */
-    public ClusterRoleBindingAction(JsonNode resource, TugManifest.Deployment deployment) {
+    public ClusterRoleBindingAction(JsonNode resource, TugManifest.Deployment deployment, ResourceActionContext context) {
+        super("ClusterRoleBinding", deployment, context);
+        api = new RbacAuthorizationV1Api(getApiClient());
         this.clusterRoleBinding = YamlParser.transformYaml(resource, V1ClusterRoleBinding.class, false);
-        this.maxWaitSeconds = deployment.getMaxWaitSeconds();
     }
 
-    private boolean resourceExists() throws ResourceActionException {
+    @Override
+    protected String getName() {
+        return clusterRoleBinding.getMetadata().getName();
+    }
 
-        String selector = "metadata.name=" + clusterRoleBinding.getMetadata().getName();
-        V1ClusterRoleBindingList result;
-        try {
-            result = api.listClusterRoleBinding(null, null, selector, true, null, null, null, null, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to get ClusterRoleBinding info: " + e.getResponseBody());
-        }
-        return result.getItems().size() > 0;
+    @Override
+    protected V1ObjectMeta getMetadata(V1ClusterRoleBinding resource) {
+        return resource.getMetadata();
     }
 
     @Override
-    public void makeReady() throws ResourceActionException {
+    protected Listing<V1ClusterRoleBinding> list(String fieldSelector, String labelSelector, String resourceVersion) throws ApiException {
 
-        if (!resourceExists()) {
-            create();
-            waitUntilCreated();
-        }
+        V1ClusterRoleBindingList result = api.listClusterRoleBinding(null, null, fieldSelector, true, labelSelector, null, resourceVersion, null, null);
+        return new Listing<>(result.getItems(), result.getMetadata().getResourceVersion());
     }
 
-    private void create() throws ResourceActionException {
-        System.out.println(String.format("creating ClusterRoleBinding '%s'", clusterRoleBinding.getMetadata().getName()));
-        try {
-            api.createClusterRoleBinding(clusterRoleBinding, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to create ClusterRoleBinding: " + e.getResponseBody(), e);
-        }
+    @Override
+    protected String listPath() {
+
+        return "/apis/rbac.authorization.k8s.io/v1/clusterrolebindings";
     }
 
-    private void waitUntilCreated() throws ResourceActionException {
+    @Override
+    protected ProtoListing<V1ClusterRoleBinding> protoListing() {
 
-        System.out.println(String.format("waiting for ClusterRoleBinding '%s' to be created", clusterRoleBinding.getMetadata().getName()));
-        Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+        return new ProtoListing<>(V1Rbac.ClusterRoleBindingList::newBuilder, listPath(), V1ClusterRoleBinding.class);
+    }
 
-        pollWait();
+    @Override
+    protected Call watchCall(ApiClient client, String fieldSelector, String resourceVersion, int timeoutSeconds) throws ApiException {
 
-        while (!resourceExists()) {
-            if (Instant.now().isAfter(maxTime)) {
-                throw new ResourceActionException(String.format("ClusterRoleBinding '%s' was not created in %d seconds", clusterRoleBinding.getMetadata().getName(), maxWaitSeconds));
-            }
-            pollWait();
-        }
+        return new RbacAuthorizationV1Api(client).listClusterRoleBindingCall(null, null, fieldSelector, true, null, null, resourceVersion, timeoutSeconds, true, null, null);
     }
 
     @Override
-    public void delete() throws ResourceActionException {
-
-        if (resourceExists()) {
-            executeDelete();
-            waitUntilDeleted();
-        }
+    protected Type watchType() {
+        return WATCH_TYPE;
     }
 
-    private void waitUntilDeleted() throws ResourceActionException {
+    @Override
+    protected V1ClusterRoleBinding getDesired() {
+        return clusterRoleBinding;
+    }
 
-        System.out.println(String.format("waiting for ClusterRoleBinding '%s' to be deleted", clusterRoleBinding.getMetadata().getName()));
-        Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+    @Override
+    protected V1ClusterRoleBinding patch(Object patch) throws ApiException {
 
-        pollWait();
+        return api.patchClusterRoleBinding(clusterRoleBinding.getMetadata().getName(), patch, null);
+    }
 
-        while (resourceExists()) {
-            if (Instant.now().isAfter(maxTime)) {
-                throw new ResourceActionException(String.format("ClusterRoleBinding '%s' was not deleted in %d seconds", clusterRoleBinding.getMetadata().getName(), maxWaitSeconds));
-            }
-            pollWait();
+    @Override
+    protected void create() throws ResourceActionException {
+        System.out.println(String.format("creating ClusterRoleBinding '%s'", clusterRoleBinding.getMetadata().getName()));
+        try {
+            api.createClusterRoleBinding(clusterRoleBinding, null);
+        } catch (ApiException e) {
+            throw new ResourceActionException("Unable to create ClusterRoleBinding: " + e.getResponseBody(), e);
         }
     }
 
-    private void executeDelete() throws ResourceActionException {
+    @Override
+    protected void executeDelete() throws ResourceActionException {
 
         System.out.println(String.format("deleting ClusterRoleBinding '%s'", clusterRoleBinding.getMetadata().getName()));
         try {
-            V1DeleteOptions deleteOptions = new V1DeleteOptions();
-            deleteOptions.propagationPolicy("Foreground");
-            api.deleteClusterRoleBinding(clusterRoleBinding.getMetadata().getName(), deleteOptions, null, null, null, "Foreground");
+            V1DeleteOptions deleteOptions = deleteOptions();
+            api.deleteClusterRoleBinding(clusterRoleBinding.getMetadata().getName(), deleteOptions, null, null, null, deleteOptions.getPropagationPolicy());
         } catch (JsonSyntaxException e) {
             //https://github.com/kubernetes-client/java/issues/205
             //no-op
@@ -118,14 +119,4 @@ public class ClusterRoleBindingAction implements ResourceAction {
             throw new ResourceActionException("Unable to delete ClusterRoleBinding: " + e.getResponseBody(), e);
         }
     }
-
-    private void pollWait() {
-
-        try {
-            Thread.sleep(1000L);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Thread was interrupted while checking ClusterRoleBinding status", e);
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,224 @@
+package cloud.nimburst.tug.actions;
+
+import cloud.nimburst.tug.ResourceActionException;
+import com.squareup.okhttp.Call;
+import io.kubernetes.client.ApiClient;
+import io.kubernetes.client.ApiException;
+import io.kubernetes.client.Pair;
+import io.kubernetes.client.models.V1DeleteOptions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Deletes resources of one kind in one namespace together, with one delete collection request for all resources whose
+ * deletion is asked for while an earlier delete request is still being made, shared by every action on that kind and
+ * namespace.
+ * <p>
+ * A deletion asked for while no other is under way is made by name at once, on the calling thread. Deletions asked for
+ * in the meantime are queued, and once the request under way is done they are made on the scheduler, the next batch
+ * of them with one request, which in turn gathers the deletions asked for while it is made.
+ * <p>
+ * A field selector cannot match one of several names, so the resources are selected by the {@link #NAME_LABEL} label,
+ * which tug puts on the resources it creates when asked to. Only resources carrying the label with their own name may
+ * be deleted this way. A batch of one, or a batch of a kind the API server cannot delete by collection, is deleted by
+ * name.
+ */
+class CollectionDeleter implements AutoCloseable {
+
+    /**
+     * The label carrying the name of each resource created by tug with name labels turned on.
+     */
+    static final String NAME_LABEL = "tug.nimburst.cloud/name";
+
+    /**
+     * The longest name a label value can carry.
+     */
+    static final int MAX_LABEL_VALUE_LENGTH = 63;
+
+    private static final String[] AUTH_NAMES = {"BearerToken"};
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final int HTTP_METHOD_NOT_ALLOWED = 405;
+    private static final int MAX_NAMES = 100;
+
+    private final String description;
+    private final ApiClient client;
+    private final String path;
+    private final V1DeleteOptions options;
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<String, Deletion> pending = new LinkedHashMap<>();
+    private boolean busy;
+    private boolean supported = true;
+    private boolean closed;
+
+    /**
+     * Instantiates a new CollectionDeleter.
+     *
+     * @param description the kind and namespace deleted from, for messages
+     * @param client      the client to delete with
+     * @param path        the API path of the collection
+     * @param options     the options of the delete requests
+     * @param scheduler   the scheduler queued deletions are made on
+     */
+    CollectionDeleter(String description, ApiClient client, String path, V1DeleteOptions options,
+                      ScheduledExecutorService scheduler) {
+
+        this.description = description;
+        this.client = client;
+        this.path = path;
+        this.options = options;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Deletes a resource, at once by name if no other deletion is under way, or else with the next batch.
+     *
+     * @param name   the resource name
+     * @param byName deletes the resource by name
+     * @return a future completed once the delete request was accepted, or failed if it was rejected
+     */
+    CompletableFuture<Void> delete(String name, ByName byName) {
+
+        boolean batching;
+        synchronized (this) {
+            batching = supported && !closed;
+            if (batching && busy) {
+                return pending.computeIfAbsent(name, n -> new Deletion(byName)).result;
+            }
+            busy = busy || batching;
+        }
+        Deletion deletion = new Deletion(byName);
+        deletion.deleteByName();
+        if (batching) {
+            next();
+        }
+        return deletion.result;
+    }
+
+    /**
+     * Builds the label selector matching the resources of the given names.
+     *
+     * @param names the resource names
+     * @return the label selector
+     */
+    static String selector(Iterable<String> names) {
+
+        return NAME_LABEL + " in (" + String.join(",", names) + ")";
+    }
+
+    /**
+     * Makes the next batch of queued deletions on the scheduler, or marks the deleter idle if there is none.
+     */
+    private synchronized void next() {
+
+        if (pending.isEmpty() || closed) {
+            busy = false;
+            return;
+        }
+        scheduler.execute(this::flush);
+    }
+
+    private void flush() {
+
+        Map<String, Deletion> batch = new LinkedHashMap<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Deletion>> entries = pending.entrySet().iterator();
+            while (entries.hasNext() && batch.size() < MAX_NAMES) {
+                Map.Entry<String, Deletion> entry = entries.next();
+                batch.put(entry.getKey(), entry.getValue());
+                entries.remove();
+            }
+        }
+        try {
+            if (batch.size() == 1) {
+                // a collection request gains nothing over deleting the one resource by name
+                batch.values().forEach(Deletion::deleteByName);
+            } else if (!deleteCollection(batch)) {
+                batch.values().forEach(Deletion::deleteByName);
+            }
+        } finally {
+            next();
+        }
+    }
+
+    /**
+     * Deletes a batch of resources with one request.
+     *
+     * @return false if the API server cannot delete resources of the kind by collection
+     */
+    private boolean deleteCollection(Map<String, Deletion> batch) {
+
+        System.out.println(String.format("deleting %d of %s with one request: %s", batch.size(), description,
+                String.join(", ", batch.keySet())));
+        try {
+            List<Pair> query = new ArrayList<>();
+            query.add(new Pair("labelSelector", selector(batch.keySet())));
+            Call call = client.buildCall(path, "DELETE", query, new ArrayList<>(), options, new HashMap<>(),
+                    new HashMap<>(), AUTH_NAMES, null);
+            client.execute(call);
+            batch.values().forEach(deletion -> deletion.result.complete(null));
+        } catch (ApiException e) {
+            if (e.getCode() == HTTP_NOT_FOUND || e.getCode() == HTTP_METHOD_NOT_ALLOWED) {
+                synchronized (this) {
+                    supported = false;
+                }
+                System.out.println(String.format("unable to delete %s by collection, deleting by name", description));
+                return false;
+            }
+            ResourceActionException failure = new ResourceActionException(
+                    String.format("Unable to delete %s: %s", description, e.getResponseBody()), e);
+            batch.values().forEach(deletion -> deletion.result.completeExceptionally(failure));
+        } catch (RuntimeException e) {
+            batch.values().forEach(deletion -> deletion.result.completeExceptionally(e));
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+
+        closed = true;
+        pending.values().forEach(deletion -> deletion.result.cancel(false));
+        pending.clear();
+    }
+
+    /**
+     * Deletes a single resource by name.
+     */
+    @FunctionalInterface
+    interface ByName {
+
+        void delete() throws ResourceActionException;
+    }
+
+    /**
+     * A deletion asked for, with its outcome.
+     */
+    private static final class Deletion {
+
+        private final ByName byName;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private Deletion(ByName byName) {
+
+            this.byName = byName;
+        }
+
+        private void deleteByName() {
+
+            try {
+                byName.delete();
+                result.complete(null);
+            } catch (ResourceActionException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
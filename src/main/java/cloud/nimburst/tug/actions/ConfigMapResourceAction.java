@@ -1,130 +1,126 @@
 package cloud.nimburst.tug.actions;
 
 import cloud.nimburst.tug.ResourceAction;
+import cloud.nimburst.tug.ResourceActionContext;
 import cloud.nimburst.tug.ResourceActionException;
 import cloud.nimburst.tug.TugManifest;
 import cloud.nimburst.tug.YamlParser;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.gson.reflect.TypeToken;
+import com.squareup.okhttp.Call;
+import io.kubernetes.client.ApiClient;
 import io.kubernetes.client.ApiException;
 import io.kubernetes.client.apis.CoreV1Api;
 import io.kubernetes.client.models.V1ConfigMap;
 import io.kubernetes.client.models.V1ConfigMapList;
 import io.kubernetes.client.models.V1DeleteOptions;
+import io.kubernetes.client.models.V1ObjectMeta;
+import io.kubernetes.client.proto.V1;
+import io.kubernetes.client.util.Watch;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.lang.reflect.Type;
 
 /**
  * {@link ResourceAction} for managing a ConfigMap resource
  */
-public class ConfigMapResourceAction implements ResourceAction {
+public class ConfigMapResourceAction extends AbstractResourceAction<V1ConfigMap> {
+
+    private static final Type WATCH_TYPE = new TypeToken<Watch.Response<V1ConfigMap>>() {}.getType();
 
     private final String namespace;
     private final V1ConfigMap configMapFile;
-    private final CoreV1Api api = new CoreV1Api();
-    private final int maxWaitSeconds;
+    private final CoreV1Api api;
 
     /**
      * Instantiates a new ConfigMapResourceAction.
      *
      * @param resource   the content of the yaml resource configuration
      * @param deployment the deployment configuration from the manifest
+     * @param context    the shared context of the run
      */
-    public ConfigMapResourceAction(JsonNode resource, TugManifest.Deployment deployment) {
+    public ConfigMapResourceAction(JsonNode resource, TugManifest.Deployment deployment, ResourceActionContext context) {
+        super("ConfigMap", deployment, context);
+        api = new CoreV1Api(getApiClient());
         configMapFile = YamlParser.transformYaml(resource, V1ConfigMap.class, false);
         String namespace = configMapFile.getMetadata().getNamespace();
         this.namespace = namespace == null ? "default" : namespace;
-        this.maxWaitSeconds = deployment.getMaxWaitSeconds();
     }
 
-    private boolean resourceExists() throws ResourceActionException {
-
-        String selector = "metadata.name=" + configMapFile.getMetadata().getName();
-        V1ConfigMapList result;
-        try {
-            result = api.listNamespacedConfigMap(namespace, null, null, selector, true, null, null, null, null, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to get ConfigMap info: " + e.getResponseBody());
-        }
-        return result.getItems().size() > 0;
+    @Override
+    protected String getName() {
+        return configMapFile.getMetadata().getName();
     }
 
     @Override
-    public void makeReady() throws ResourceActionException {
-
-        if (!resourceExists()) {
-            create();
-            waitUntilCreated();
-        }
+    public String getNamespace() {
+        return namespace;
     }
 
-    private void create() throws ResourceActionException {
-        System.out.println(String.format("creating ConfigMap '%s'", configMapFile.getMetadata().getName()));
-        try {
-            api.createNamespacedConfigMap(namespace, configMapFile, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to create ConfigMap: " + e.getResponseBody(), e);
-        }
+    @Override
+    protected V1ObjectMeta getMetadata(V1ConfigMap resource) {
+        return resource.getMetadata();
     }
 
-    private void waitUntilCreated() throws ResourceActionException {
+    @Override
+    protected Listing<V1ConfigMap> list(String fieldSelector, String labelSelector, String resourceVersion) throws ApiException {
 
-        System.out.println(String.format("waiting for ConfigMap '%s' to be created", configMapFile.getMetadata().getName()));
-        Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+        V1ConfigMapList result = api.listNamespacedConfigMap(namespace, null, null, fieldSelector, true, labelSelector, null, resourceVersion, null, null);
+        return new Listing<>(result.getItems(), result.getMetadata().getResourceVersion());
+    }
 
-        pollWait();
+    @Override
+    protected String listPath() {
 
-        while (!resourceExists()) {
-            if (Instant.now().isAfter(maxTime)) {
-                throw new ResourceActionException(String.format("ConfigMap '%s' was not created in %d seconds", configMapFile.getMetadata().getName(), maxWaitSeconds));
-            }
-            pollWait();
-        }
+        return "/api/v1/namespaces/" + namespace + "/configmaps";
     }
 
     @Override
-    public void delete() throws ResourceActionException {
+    protected ProtoListing<V1ConfigMap> protoListing() {
 
-        if (resourceExists()) {
-            executeDelete();
-            waitUntilDeleted();
-        }
+        return new ProtoListing<>(V1.ConfigMapList::newBuilder, listPath(), V1ConfigMap.class);
     }
 
-    private void waitUntilDeleted() throws ResourceActionException {
+    @Override
+    protected Call watchCall(ApiClient client, String fieldSelector, String resourceVersion, int timeoutSeconds) throws ApiException {
 
-        System.out.println(String.format("waiting for ConfigMap '%s' to be deleted", configMapFile.getMetadata().getName()));
-        Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+        return new CoreV1Api(client).listNamespacedConfigMapCall(namespace, null, null, fieldSelector, true, null, null, resourceVersion, timeoutSeconds, true, null, null);
+    }
 
-        pollWait();
+    @Override
+    protected Type watchType() {
+        return WATCH_TYPE;
+    }
 
-        while (resourceExists()) {
-            if (Instant.now().isAfter(maxTime)) {
-                throw new ResourceActionException(String.format("ConfigMap '%s' was not deleted in %d seconds", configMapFile.getMetadata().getName(), maxWaitSeconds));
-            }
-            pollWait();
-        }
+    @Override
+    protected V1ConfigMap getDesired() {
+        return configMapFile;
     }
 
-    private void executeDelete() throws ResourceActionException {
+    @Override
+    protected V1ConfigMap patch(Object patch) throws ApiException {
 
-        System.out.println(String.format("deleting ConfigMap '%s'", configMapFile.getMetadata().getName()));
+        return api.patchNamespacedConfigMap(configMapFile.getMetadata().getName(), namespace, patch, null);
+    }
+
+    @Override
+    protected void create() throws ResourceActionException {
+        System.out.println(String.format("creating ConfigMap '%s'", configMapFile.getMetadata().getName()));
         try {
-            V1DeleteOptions deleteOptions = new V1DeleteOptions();
-            deleteOptions.propagationPolicy("Foreground");
-            api.deleteNamespacedConfigMap(configMapFile.getMetadata().getName(), namespace, deleteOptions, null, null, null, "Foreground");
+            api.createNamespacedConfigMap(namespace, configMapFile, null);
         } catch (ApiException e) {
-            throw new ResourceActionException("Unable to delete ConfigMap: " + e.getResponseBody(), e);
+            throw new ResourceActionException("Unable to create ConfigMap: " + e.getResponseBody(), e);
         }
     }
 
-    private void pollWait() {
+    @Override
+    protected void executeDelete() throws ResourceActionException {
 
+        System.out.println(String.format("deleting ConfigMap '%s'", configMapFile.getMetadata().getName()));
         try {
-            Thread.sleep(1000L);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Thread was interrupted while checking ConfigMap status", e);
+            V1DeleteOptions deleteOptions = deleteOptions();
+            api.deleteNamespacedConfigMap(configMapFile.getMetadata().getName(), namespace, deleteOptions, null, null, null, deleteOptions.getPropagationPolicy());
+        } catch (ApiException e) {
+            throw new ResourceActionException("Unable to delete ConfigMap: " + e.getResponseBody(), e);
         }
     }
 }
@@ -1,158 +1,194 @@
 package cloud.nimburst.tug.actions;
 
 import cloud.nimburst.tug.ResourceAction;
+import cloud.nimburst.tug.ResourceActionContext;
 import cloud.nimburst.tug.ResourceActionException;
 import cloud.nimburst.tug.TugManifest;
 import cloud.nimburst.tug.YamlParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import com.squareup.okhttp.Call;
+import io.kubernetes.client.ApiClient;
 import io.kubernetes.client.ApiException;
 import io.kubernetes.client.apis.AppsV1beta2Api;
 import io.kubernetes.client.models.V1DeleteOptions;
+import io.kubernetes.client.models.V1ObjectMeta;
 import io.kubernetes.client.models.V1beta2Deployment;
+import io.kubernetes.client.models.V1beta2DeploymentCondition;
 import io.kubernetes.client.models.V1beta2DeploymentList;
+import io.kubernetes.client.models.V1beta2DeploymentStatus;
+import io.kubernetes.client.proto.V1beta2Apps;
+import io.kubernetes.client.util.Watch;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.lang.reflect.Type;
 
 /**
  * {@link ResourceAction} for managing a Deployment resource
  */
-public class DeploymentResourceAction implements ResourceAction {
+public class DeploymentResourceAction extends AbstractResourceAction<V1beta2Deployment> {
+
+    private static final Type WATCH_TYPE = new TypeToken<Watch.Response<V1beta2Deployment>>() {}.getType();
 
     private final String namespace;
     private final V1beta2Deployment deploymentFile;
-    private final AppsV1beta2Api api = new AppsV1beta2Api();
-    private final int maxWaitSeconds;
+    private final AppsV1beta2Api api;
+    private final String readyReplicas;
 
     /**
      * Instantiates a new DeploymentResourceAction.
      *
      * @param resource   the content of the yaml resource configuration
      * @param deployment the deployment configuration from the manifest
+     * @param context    the shared context of the run
      */
-    public DeploymentResourceAction(JsonNode resource, TugManifest.Deployment deployment) {
+    public DeploymentResourceAction(JsonNode resource, TugManifest.Deployment deployment, ResourceActionContext context) {
+        super("Deployment", deployment, context);
+        api = new AppsV1beta2Api(getApiClient());
+        readyReplicas = deployment.getReadiness().getReplicas();
         deploymentFile = YamlParser.transformYaml(resource, V1beta2Deployment.class, false);
         String namespace = deploymentFile.getMetadata().getNamespace();
         this.namespace = namespace == null ? "default" : namespace;
-        this.maxWaitSeconds = deployment.getMaxWaitSeconds();
     }
 
-    private boolean resourceExists() throws ResourceActionException {
-
-        String selector = "metadata.name=" + deploymentFile.getMetadata().getName();
-        V1beta2DeploymentList result;
-        try {
-            result = api.listNamespacedDeployment(namespace, null, null, selector, true, null, null, null, null, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to get Deployment info: " + e.getResponseBody());
-        }
-        return result.getItems().size() > 0;
+    @Override
+    protected String getName() {
+        return deploymentFile.getMetadata().getName();
     }
 
-    private boolean resourceReady() throws ResourceActionException {
+    @Override
+    public String getNamespace() {
+        return namespace;
+    }
 
-        V1beta2Deployment deployment;
-        try {
-            deployment = api.readNamespacedDeployment(deploymentFile.getMetadata().getName(), namespace, null, null, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to get Deployment info: " + e.getResponseBody(), e);
-        }
-        Integer replicas = deployment.getStatus().getAvailableReplicas();
-        return replicas != null && replicas > 0;
+    @Override
+    protected V1ObjectMeta getMetadata(V1beta2Deployment resource) {
+        return resource.getMetadata();
     }
 
-    private void waitUntilReady() throws ResourceActionException {
+    @Override
+    protected Listing<V1beta2Deployment> list(String fieldSelector, String labelSelector, String resourceVersion) throws ApiException {
 
-        if(!resourceReady()) {
-            System.out.println(String.format("waiting for Deployment '%s' to be ready", deploymentFile.getMetadata().getName()));
-            Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+        V1beta2DeploymentList result = api.listNamespacedDeployment(namespace, null, null, fieldSelector, true, labelSelector, null, resourceVersion, null, null);
+        return new Listing<>(result.getItems(), result.getMetadata().getResourceVersion());
+    }
 
-            pollWait();
+    @Override
+    protected String listPath() {
 
-            while (!resourceReady()) {
-                if (Instant.now().isAfter(maxTime)) {
-                    throw new ResourceActionException(String.format("Deployment '%s' was not ready in %d seconds", deploymentFile.getMetadata().getName(), maxWaitSeconds));
-                }
-                pollWait();
-            }
-        }
+        return "/apis/apps/v1beta2/namespaces/" + namespace + "/deployments";
     }
 
-    private void pollWait(){
-        try {
-            Thread.sleep(1000L);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Thread was interrupted while checking Deployment status", e);
-        }
+    @Override
+    protected ProtoListing<V1beta2Deployment> protoListing() {
+
+        return new ProtoListing<>(V1beta2Apps.DeploymentList::newBuilder, listPath(), V1beta2Deployment.class);
     }
 
     @Override
-    public void makeReady() throws ResourceActionException {
+    protected Call watchCall(ApiClient client, String fieldSelector, String resourceVersion, int timeoutSeconds) throws ApiException {
 
-        if (!resourceExists()) {
-            create();
-            waitUntilCreated();
-        }
-        waitUntilReady();
+        return new AppsV1beta2Api(client).listNamespacedDeploymentCall(namespace, null, null, fieldSelector, true, null, null, resourceVersion, timeoutSeconds, true, null, null);
     }
 
-    private void create() throws ResourceActionException {
-        System.out.println(String.format("creating Deployment '%s'", deploymentFile.getMetadata().getName()));
-        try {
-            api.createNamespacedDeployment(namespace, deploymentFile, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to create Deployment: " + e.getResponseBody(), e);
-        }
+    @Override
+    protected Type watchType() {
+        return WATCH_TYPE;
     }
 
-    private void waitUntilCreated() throws ResourceActionException {
+    @Override
+    protected boolean isReady(V1beta2Deployment deployment) throws ResourceActionException {
 
-        System.out.println(String.format("waiting for Deployment '%s' to be created", deploymentFile.getMetadata().getName()));
-        Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+        V1beta2DeploymentStatus status = deployment.getStatus();
+        if (status == null) {
+            return false;
+        }
+        // after an update, only replicas of the new revision count
+        Long generation = deployment.getMetadata().getGeneration();
+        if (generation != null && (status.getObservedGeneration() == null || status.getObservedGeneration() < generation)) {
+            return false;
+        }
+        int required = requiredReplicas(readyReplicas, deployment.getSpec() == null ? null : deployment.getSpec().getReplicas());
+        int updated = status.getUpdatedReplicas() == null ? 0 : status.getUpdatedReplicas();
+        int available = status.getAvailableReplicas() == null ? 0 : status.getAvailableReplicas();
+        if (updated >= required && available >= required) {
+            return true;
+        }
+        String failure = failure(status);
+        if (failure != null) {
+            throw new ResourceActionException(String.format("Deployment '%s' can never become ready: %s", getName(), failure));
+        }
+        return false;
+    }
 
-        pollWait();
+    /**
+     * Works out how many replicas must be available for a deployment to be ready.
+     *
+     * @param readyReplicas the number or percentage of replicas from the manifest, or null for a single replica
+     * @param desired       the desired replicas of the deployment, or null for the default of one
+     * @return the number of replicas, at least one
+     */
+    static int requiredReplicas(String readyReplicas, Integer desired) {
 
-        while (!resourceExists()) {
-            if (Instant.now().isAfter(maxTime)) {
-                throw new ResourceActionException(String.format("Deployment '%s' was not created in %d seconds", deploymentFile.getMetadata().getName(), maxWaitSeconds));
-            }
-            pollWait();
+        if (readyReplicas == null) {
+            return 1;
         }
+        if (readyReplicas.endsWith("%")) {
+            int percent = Integer.parseInt(readyReplicas.substring(0, readyReplicas.length() - 1));
+            int replicas = desired == null ? 1 : desired;
+            return Math.max(1, (int) Math.ceil(replicas * percent / 100.0));
+        }
+        return Math.max(1, Integer.parseInt(readyReplicas));
     }
 
-    @Override
-    public void delete() throws ResourceActionException {
+    /**
+     * Finds why the current rollout of a deployment can never complete: the controller has given up on it once it made
+     * no progress for the progress deadline of the deployment.
+     *
+     * @param status the status of the deployment, observed at its current generation
+     * @return the reason or null if the rollout may still complete
+     */
+    static String failure(V1beta2DeploymentStatus status) {
 
-        if (resourceExists()) {
-            executeDelete();
-            waitUntilDeleted();
+        if (status.getConditions() == null) {
+            return null;
         }
+        for (V1beta2DeploymentCondition condition : status.getConditions()) {
+            if ("Progressing".equals(condition.getType()) && "False".equals(condition.getStatus())) {
+                return String.format("its rollout stopped progressing (%s): %s", condition.getReason(), condition.getMessage());
+            }
+        }
+        return null;
     }
 
-    private void waitUntilDeleted() throws ResourceActionException {
+    @Override
+    protected V1beta2Deployment getDesired() {
+        return deploymentFile;
+    }
 
-        System.out.println(String.format("waiting for Deployment '%s' to be deleted", deploymentFile.getMetadata().getName()));
-        Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+    @Override
+    protected V1beta2Deployment patch(Object patch) throws ApiException {
 
-        pollWait();
+        return api.patchNamespacedDeployment(deploymentFile.getMetadata().getName(), namespace, patch, null);
+    }
 
-        while (resourceExists()) {
-            if (Instant.now().isAfter(maxTime)) {
-                throw new ResourceActionException(String.format("Deployment '%s' was not deleted in %d seconds", deploymentFile.getMetadata().getName(), maxWaitSeconds));
-            }
-            pollWait();
+    @Override
+    protected void create() throws ResourceActionException {
+        System.out.println(String.format("creating Deployment '%s'", deploymentFile.getMetadata().getName()));
+        try {
+            api.createNamespacedDeployment(namespace, deploymentFile, null);
+        } catch (ApiException e) {
+            throw new ResourceActionException("Unable to create Deployment: " + e.getResponseBody(), e);
         }
     }
 
-    private void executeDelete() throws ResourceActionException {
+    @Override
+    protected void executeDelete() throws ResourceActionException {
 
         System.out.println(String.format("deleting Deployment '%s'", deploymentFile.getMetadata().getName()));
         try {
-            V1DeleteOptions deleteOptions = new V1DeleteOptions();
-            deleteOptions.propagationPolicy("Foreground");
-            api.deleteNamespacedDeployment(deploymentFile.getMetadata().getName(), namespace, deleteOptions, null, null, null, "Foreground");
+            V1DeleteOptions deleteOptions = deleteOptions();
+            api.deleteNamespacedDeployment(deploymentFile.getMetadata().getName(), namespace, deleteOptions, null, null, null, deleteOptions.getPropagationPolicy());
         } catch (JsonSyntaxException e) {
             //https://github.com/kubernetes-client/java/issues/205
             //no-op
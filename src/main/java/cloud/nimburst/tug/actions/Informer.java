@@ -0,0 +1,255 @@
+package cloud.nimburst.tug.actions;
+
+import cloud.nimburst.tug.ResourceActionContext;
+import com.squareup.okhttp.Call;
+import io.kubernetes.client.ApiClient;
+import io.kubernetes.client.ApiException;
+import io.kubernetes.client.models.V1ObjectMeta;
+import io.kubernetes.client.util.Watch;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * An in-process cache of all resources of one kind in one namespace, kept current by a single list and watch shared by
+ * every action on that kind and namespace.
+ *
+ * @param <T> the model class of the resources
+ */
+class Informer<T> implements AutoCloseable {
+
+    private static final int WATCH_TIMEOUT_SECONDS = 300;
+    private static final long RETRY_MILLIS = 1000L;
+
+    private final String description;
+    private final Lister<T> lister;
+    private final WatchCallFactory watchCallFactory;
+    private final Type watchType;
+    private final Function<T, V1ObjectMeta> metadata;
+    private final ResourceActionContext context;
+
+    private final Map<String, T> store = new ConcurrentHashMap<>();
+    private final Map<String, List<Waiter<T>>> waiters = new HashMap<>();
+    private final CompletableFuture<Void> synced = new CompletableFuture<>();
+    private volatile boolean closed;
+    private volatile Watch<T> watch;
+
+    /**
+     * Instantiates a new Informer. It does nothing until {@link #start()} is called.
+     *
+     * @param description      the kind and namespace of the cache, for messages
+     * @param lister           lists all resources of the kind in the namespace
+     * @param watchCallFactory builds a watch call on all resources of the kind in the namespace
+     * @param watchType        the type of the watch events
+     * @param metadata         gets the metadata of a resource
+     * @param context          the shared context of the run
+     */
+    Informer(String description, Lister<T> lister, WatchCallFactory watchCallFactory, Type watchType,
+             Function<T, V1ObjectMeta> metadata, ResourceActionContext context) {
+
+        this.description = description;
+        this.lister = lister;
+        this.watchCallFactory = watchCallFactory;
+        this.watchType = watchType;
+        this.metadata = metadata;
+        this.context = context;
+    }
+
+    /**
+     * Starts listing and watching on the context's watch executor. If the executor has no thread left, the cache fails
+     * to sync and its users poll instead.
+     *
+     * @return this informer
+     */
+    Informer<T> start() {
+
+        try {
+            context.getWatchExecutor().execute(this::run);
+        } catch (RejectedExecutionException e) {
+            synced.completeExceptionally(e);
+        }
+        return this;
+    }
+
+    /**
+     * Gets a future completed once the initial list has filled the cache, or failed if it could not be listed.
+     *
+     * @return the synced future
+     */
+    CompletableFuture<Void> synced() {
+        return synced;
+    }
+
+    /**
+     * Gets a resource from the cache.
+     *
+     * @param name the resource name
+     * @return the resource or null if it does not exist
+     */
+    T get(String name) {
+        return store.get(name);
+    }
+
+    /**
+     * Copies the current content of the cache.
+     *
+     * @return the cached resources by name
+     */
+    Map<String, Object> snapshot() {
+        return new HashMap<>(store);
+    }
+
+    /**
+     * Waits for the cached state of a resource to satisfy a condition. The condition is checked against the current
+     * state immediately and again whenever the resource changes. Completing the returned future from outside, for
+     * example on timeout, stops the wait.
+     *
+     * @param name      the resource name
+     * @param condition the condition, given null while the resource does not exist
+     * @return a future completed once the condition holds
+     */
+    CompletableFuture<Void> await(String name, ResourceStatus.Condition<T> condition) {
+
+        Waiter<T> waiter = new Waiter<>(condition);
+        synchronized (this) {
+            waiters.computeIfAbsent(name, n -> new ArrayList<>()).add(waiter);
+        }
+        waiter.getResult().whenComplete((r, e) -> remove(name, waiter));
+        synced.thenRun(() -> waiter.check(store.get(name)));
+        return waiter.getResult();
+    }
+
+    private synchronized void remove(String name, Waiter<T> waiter) {
+
+        List<Waiter<T>> list = waiters.get(name);
+        if (list != null) {
+            list.remove(waiter);
+            if (list.isEmpty()) {
+                waiters.remove(name);
+            }
+        }
+    }
+
+    private void notify(String name) {
+
+        List<Waiter<T>> list;
+        synchronized (this) {
+            list = waiters.containsKey(name) ? new ArrayList<>(waiters.get(name)) : null;
+        }
+        if (list != null) {
+            T resource = store.get(name);
+            list.forEach(waiter -> waiter.check(resource));
+        }
+    }
+
+    private String relist() throws ApiException {
+
+        Listing<T> listing = lister.list();
+        Map<String, T> items = new HashMap<>();
+        for (T item : listing.getItems()) {
+            items.put(metadata.apply(item).getName(), item);
+        }
+        Set<String> names = new HashSet<>(store.keySet());
+        names.addAll(items.keySet());
+        store.keySet().retainAll(items.keySet());
+        store.putAll(items);
+        synced.complete(null);
+        names.forEach(this::notify);
+        return listing.getResourceVersion();
+    }
+
+    private void run() {
+
+        String resourceVersion = null;
+        while (!closed) {
+            try {
+                if (resourceVersion == null) {
+                    resourceVersion = relist();
+                }
+                ApiClient client = context.getWatchClient();
+                Call call = watchCallFactory.watchCall(client, resourceVersion, WATCH_TIMEOUT_SECONDS);
+                Watch<T> current = Watch.createWatch(client, call, watchType);
+                watch = current;
+                try {
+                    for (Watch.Response<T> event : current) {
+                        if ("ERROR".equals(event.type)) {
+                            // most likely the resource version has expired, start again from a fresh list
+                            resourceVersion = null;
+                            break;
+                        }
+                        V1ObjectMeta meta = metadata.apply(event.object);
+                        resourceVersion = meta.getResourceVersion();
+                        if ("DELETED".equals(event.type)) {
+                            store.remove(meta.getName());
+                        } else {
+                            store.put(meta.getName(), event.object);
+                        }
+                        notify(meta.getName());
+                    }
+                } finally {
+                    current.close();
+                }
+            } catch (ApiException | IOException | RuntimeException e) {
+                if (closed) {
+                    return;
+                }
+                if (!synced.isDone()) {
+                    synced.completeExceptionally(e);
+                    return;
+                }
+                System.out.println(String.format("watch on %s failed, retrying: %s", description, e.getMessage()));
+                resourceVersion = null;
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+
+        closed = true;
+        Watch<T> current = watch;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                //closing anyway
+            }
+        }
+    }
+
+    /**
+     * Lists all resources of the kind in the namespace.
+     *
+     * @param <T> the model class of the resources
+     */
+    @FunctionalInterface
+    interface Lister<T> {
+
+        Listing<T> list() throws ApiException;
+    }
+
+    /**
+     * Builds a watch call on all resources of the kind in the namespace.
+     */
+    @FunctionalInterface
+    interface WatchCallFactory {
+
+        Call watchCall(ApiClient client, String resourceVersion, int timeoutSeconds) throws ApiException;
+    }
+}
@@ -1,119 +1,125 @@
 package cloud.nimburst.tug.actions;
 
 import cloud.nimburst.tug.ResourceAction;
+import cloud.nimburst.tug.ResourceActionContext;
 import cloud.nimburst.tug.ResourceActionException;
 import cloud.nimburst.tug.TugManifest.Deployment;
 import cloud.nimburst.tug.YamlParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import com.squareup.okhttp.Call;
+import io.kubernetes.client.ApiClient;
 import io.kubernetes.client.ApiException;
 import io.kubernetes.client.apis.ExtensionsV1beta1Api;
 import io.kubernetes.client.models.V1DeleteOptions;
+import io.kubernetes.client.models.V1ObjectMeta;
 import io.kubernetes.client.models.V1beta1Ingress;
 import io.kubernetes.client.models.V1beta1IngressList;
+import io.kubernetes.client.proto.V1beta1Extensions;
+import io.kubernetes.client.util.Watch;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.lang.reflect.Type;
 
 /**
  * {@link ResourceAction} for managing an Ingress resource
  */
-public class IngressResourceAction implements ResourceAction {
+public class IngressResourceAction extends AbstractResourceAction<V1beta1Ingress> {
+
+    private static final Type WATCH_TYPE = new TypeToken<Watch.Response<V1beta1Ingress>>() {}.getType();
 
     private final String namespace;
     private final V1beta1Ingress ingressFile;
-    private final ExtensionsV1beta1Api api = new ExtensionsV1beta1Api();
-    private final int maxWaitSeconds;
+    private final ExtensionsV1beta1Api api;
 
     /**
      * Instantiates a new IngressResourceAction.
      *
      * @param resource   the content of the yaml resource configuration
      * @param deployment the deployment configuration from the manifest
+     * @param context    the shared context of the run
      */
-    public IngressResourceAction(JsonNode resource, Deployment deployment) {
+    public IngressResourceAction(JsonNode resource, Deployment deployment, ResourceActionContext context) {
+        super("Ingress", deployment, context);
+        api = new ExtensionsV1beta1Api(getApiClient());
         ingressFile = YamlParser.transformYaml(resource, V1beta1Ingress.class, false);
         String namespace = ingressFile.getMetadata().getNamespace();
         this.namespace = namespace == null ? "default" : namespace;
-        this.maxWaitSeconds = deployment.getMaxWaitSeconds();
     }
 
-    private boolean resourceExists() throws ResourceActionException {
-
-        String selector = "metadata.name=" + ingressFile.getMetadata().getName();
-        V1beta1IngressList result;
-        try {
-            result = api.listNamespacedIngress(namespace, null, null, selector, true, null, null, null, null, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to get Ingress info: " + e.getResponseBody());
-        }
-        return result.getItems().size() > 0;
+    @Override
+    protected String getName() {
+        return ingressFile.getMetadata().getName();
     }
 
     @Override
-    public void makeReady() throws ResourceActionException {
+    public String getNamespace() {
+        return namespace;
+    }
 
-        if (!resourceExists()) {
-            create();
-            waitUntilCreated();
-        }
+    @Override
+    protected V1ObjectMeta getMetadata(V1beta1Ingress resource) {
+        return resource.getMetadata();
     }
 
-    private void create() throws ResourceActionException {
-        System.out.println(String.format("creating Ingress '%s'", ingressFile.getMetadata().getName()));
-        try {
-            api.createNamespacedIngress(namespace, ingressFile, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to create Ingress: " + e.getResponseBody(), e);
-        }
+    @Override
+    protected Listing<V1beta1Ingress> list(String fieldSelector, String labelSelector, String resourceVersion) throws ApiException {
+
+        V1beta1IngressList result = api.listNamespacedIngress(namespace, null, null, fieldSelector, true, labelSelector, null, resourceVersion, null, null);
+        return new Listing<>(result.getItems(), result.getMetadata().getResourceVersion());
     }
 
-    private void waitUntilCreated() throws ResourceActionException {
+    @Override
+    protected String listPath() {
 
-        System.out.println(String.format("waiting for Ingress '%s' to be created", ingressFile.getMetadata().getName()));
-        Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+        return "/apis/extensions/v1beta1/namespaces/" + namespace + "/ingresses";
+    }
 
-        pollWait();
+    @Override
+    protected ProtoListing<V1beta1Ingress> protoListing() {
 
-        while (!resourceExists()) {
-            if (Instant.now().isAfter(maxTime)) {
-                throw new ResourceActionException(String.format("Ingress '%s' was not created in %d seconds", ingressFile.getMetadata().getName(), maxWaitSeconds));
-            }
-            pollWait();
-        }
+        return new ProtoListing<>(V1beta1Extensions.IngressList::newBuilder, listPath(), V1beta1Ingress.class);
     }
 
     @Override
-    public void delete() throws ResourceActionException {
+    protected Call watchCall(ApiClient client, String fieldSelector, String resourceVersion, int timeoutSeconds) throws ApiException {
 
-        if (resourceExists()) {
-            executeDelete();
-            waitUntilDeleted();
-        }
+        return new ExtensionsV1beta1Api(client).listNamespacedIngressCall(namespace, null, null, fieldSelector, true, null, null, resourceVersion, timeoutSeconds, true, null, null);
     }
 
-    private void waitUntilDeleted() throws ResourceActionException {
+    @Override
+    protected Type watchType() {
+        return WATCH_TYPE;
+    }
+
+    @Override
+    protected V1beta1Ingress getDesired() {
+        return ingressFile;
+    }
 
-        System.out.println(String.format("waiting for Ingress '%s' to be deleted", ingressFile.getMetadata().getName()));
-        Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+    @Override
+    protected V1beta1Ingress patch(Object patch) throws ApiException {
 
-        pollWait();
+        return api.patchNamespacedIngress(ingressFile.getMetadata().getName(), namespace, patch, null);
+    }
 
-        while (resourceExists()) {
-            if (Instant.now().isAfter(maxTime)) {
-                throw new ResourceActionException(String.format("Ingress '%s' was not deleted in %d seconds", ingressFile.getMetadata().getName(), maxWaitSeconds));
-            }
-            pollWait();
+    @Override
+    protected void create() throws ResourceActionException {
+        System.out.println(String.format("creating Ingress '%s'", ingressFile.getMetadata().getName()));
+        try {
+            api.createNamespacedIngress(namespace, ingressFile, null);
+        } catch (ApiException e) {
+            throw new ResourceActionException("Unable to create Ingress: " + e.getResponseBody(), e);
         }
     }
 
-    private void executeDelete() throws ResourceActionException {
+    @Override
+    protected void executeDelete() throws ResourceActionException {
 
         System.out.println(String.format("deleting Ingress '%s'", ingressFile.getMetadata().getName()));
         try {
-            V1DeleteOptions deleteOptions = new V1DeleteOptions();
-            deleteOptions.propagationPolicy("Foreground");
-            api.deleteNamespacedIngress(ingressFile.getMetadata().getName(), namespace, deleteOptions, null, null, null, "Foreground");
+            V1DeleteOptions deleteOptions = deleteOptions();
+            api.deleteNamespacedIngress(ingressFile.getMetadata().getName(), namespace, deleteOptions, null, null, null, deleteOptions.getPropagationPolicy());
         } catch (JsonSyntaxException e) {
             //https://github.com/kubernetes-client/java/issues/205
             //no-op
@@ -121,14 +127,4 @@ public class IngressResourceAction implements ResourceAction {
             throw new ResourceActionException("Unable to delete Ingress: " + e.getResponseBody(), e);
         }
     }
-
-    private void pollWait() {
-
-        try {
-            Thread.sleep(1000L);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Thread was interrupted while checking Ingress status", e);
-        }
-    }
 }
@@ -1,161 +1,205 @@
 package cloud.nimburst.tug.actions;
 
 import cloud.nimburst.tug.ResourceAction;
+import cloud.nimburst.tug.ResourceActionContext;
 import cloud.nimburst.tug.ResourceActionException;
 import cloud.nimburst.tug.TugManifest;
 import cloud.nimburst.tug.YamlParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import com.squareup.okhttp.Call;
+import io.kubernetes.client.ApiClient;
 import io.kubernetes.client.ApiException;
 import io.kubernetes.client.apis.BatchV1Api;
 import io.kubernetes.client.models.V1DeleteOptions;
 import io.kubernetes.client.models.V1Job;
+import io.kubernetes.client.models.V1JobCondition;
 import io.kubernetes.client.models.V1JobList;
+import io.kubernetes.client.models.V1JobStatus;
+import io.kubernetes.client.models.V1ObjectMeta;
+import io.kubernetes.client.proto.V1Batch;
+import io.kubernetes.client.util.Watch;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.lang.reflect.Type;
 
 /**
  * {@link ResourceAction} for managing a Job resource
  */
-public class JobResourceAction implements ResourceAction {
+public class JobResourceAction extends AbstractResourceAction<V1Job> {
+
+    private static final Type WATCH_TYPE = new TypeToken<Watch.Response<V1Job>>() {}.getType();
+    // time for the controller to mark the job failed once its deadline has passed
+    private static final long DEADLINE_GRACE_SECONDS = 30;
 
     private final String namespace;
     private final V1Job jobFile;
-    private final BatchV1Api api = new BatchV1Api();
-    private final int maxWaitSeconds;
+    private final BatchV1Api api;
 
     /**
      * Instantiates a new JobResourceAction.
      *
      * @param resource   the content of the yaml resource configuration
      * @param deployment the deployment configuration from the manifest
+     * @param context    the shared context of the run
      */
-    public JobResourceAction(JsonNode resource, TugManifest.Deployment deployment) {
+    public JobResourceAction(JsonNode resource, TugManifest.Deployment deployment, ResourceActionContext context) {
+        super("Job", deployment, context);
+        api = new BatchV1Api(getApiClient());
         jobFile = YamlParser.transformYaml(resource, V1Job.class, false);
         String namespace = jobFile.getMetadata().getNamespace();
         this.namespace = namespace == null ? "default" : namespace;
-        this.maxWaitSeconds = deployment.getMaxWaitSeconds();
     }
 
-    private boolean resourceExists() throws ResourceActionException {
+    @Override
+    protected String getName() {
+        return jobFile.getMetadata().getName();
+    }
 
-        String selector = "metadata.name=" + jobFile.getMetadata().getName();
-        V1JobList result;
-        try {
-            result = api.listNamespacedJob(namespace, null, null, selector, true, null, null, null, null, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to get Job info: " + e.getResponseBody());
-        }
-        return result.getItems().size() > 0;
+    @Override
+    public String getNamespace() {
+        return namespace;
     }
 
-    private boolean resourceReady() throws ResourceActionException {
+    @Override
+    protected V1ObjectMeta getMetadata(V1Job resource) {
+        return resource.getMetadata();
+    }
 
-        V1Job job;
-        try {
-            job = api.readNamespacedJob(jobFile.getMetadata().getName(), namespace, null, null, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to get Job info: " + e.getResponseBody(), e);
-        }
+    @Override
+    protected Listing<V1Job> list(String fieldSelector, String labelSelector, String resourceVersion) throws ApiException {
 
-        Integer succeeded = job.getStatus().getSucceeded();
-        return succeeded != null && succeeded > 0;
+        V1JobList result = api.listNamespacedJob(namespace, null, null, fieldSelector, true, labelSelector, null, resourceVersion, null, null);
+        return new Listing<>(result.getItems(), result.getMetadata().getResourceVersion());
     }
 
-    private void waitUntilReady() throws ResourceActionException {
+    @Override
+    protected String listPath() {
 
-        if (!resourceReady()) {
-            System.out.println(String.format("waiting for Job '%s' to be ready", jobFile.getMetadata().getName()));
-            Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+        return "/apis/batch/v1/namespaces/" + namespace + "/jobs";
+    }
 
-            pollWait();
+    @Override
+    protected ProtoListing<V1Job> protoListing() {
 
-            while (!resourceReady()) {
-                if (Instant.now().isAfter(maxTime)) {
-                    throw new ResourceActionException(String.format("Job '%s' was not ready in %d seconds", jobFile.getMetadata().getName(), maxWaitSeconds));
-                }
-                pollWait();
-            }
-        }
+        return new ProtoListing<>(V1Batch.JobList::newBuilder, listPath(), V1Job.class);
     }
 
-    private void pollWait() {
+    @Override
+    protected Call watchCall(ApiClient client, String fieldSelector, String resourceVersion, int timeoutSeconds) throws ApiException {
 
-        try {
-            Thread.sleep(1000L);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Thread was interrupted while checking Job status", e);
-        }
+        return new BatchV1Api(client).listNamespacedJobCall(namespace, null, null, fieldSelector, true, null, null, resourceVersion, timeoutSeconds, true, null, null);
     }
 
     @Override
-    public void makeReady() throws ResourceActionException {
-
-        if (!resourceExists()) {
-            create();
-            waitUntilCreated();
-        }
-        waitUntilReady();
+    protected Type watchType() {
+        return WATCH_TYPE;
     }
 
-    private void create() throws ResourceActionException {
+    @Override
+    protected boolean isReady(V1Job job) throws ResourceActionException {
 
-        System.out.println(String.format("creating Job '%s'", jobFile.getMetadata().getName()));
-        try {
-            api.createNamespacedJob(namespace, jobFile, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to create Job: " + e.getResponseBody(), e);
+        String failure = failure(job);
+        if (failure != null) {
+            throw new ResourceActionException(String.format("Job '%s' failed: %s", getName(), failure));
         }
+        return complete(job);
     }
 
-    private void waitUntilCreated() throws ResourceActionException {
+    /**
+     * Finds why a job has failed, once the controller has given up on it, for example because it exceeded its back off
+     * limit or its active deadline.
+     *
+     * @param job the job
+     * @return the reason or null if the job has not failed
+     */
+    static String failure(V1Job job) {
 
-        System.out.println(String.format("waiting for Job '%s' to be created", jobFile.getMetadata().getName()));
-        Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+        if (job.getStatus() == null || job.getStatus().getConditions() == null) {
+            return null;
+        }
+        for (V1JobCondition condition : job.getStatus().getConditions()) {
+            if ("Failed".equals(condition.getType()) && "True".equals(condition.getStatus())) {
+                return String.format("%s: %s", condition.getReason(), condition.getMessage());
+            }
+        }
+        return null;
+    }
 
-        pollWait();
+    /**
+     * Checks whether a job has completed. That is when the controller says so or, before it does, when as many pods
+     * succeeded as the job needs completions. Without a number of completions the job is a work queue, done once a
+     * pod has succeeded and none is still running.
+     *
+     * @param job the job
+     * @return true if the job has completed
+     */
+    static boolean complete(V1Job job) {
 
-        while (!resourceExists()) {
-            if (Instant.now().isAfter(maxTime)) {
-                throw new ResourceActionException(String.format("Job '%s' was not created in %d seconds", jobFile.getMetadata().getName(), maxWaitSeconds));
-            }
-            pollWait();
+        V1JobStatus status = job.getStatus();
+        if (status == null) {
+            return false;
+        }
+        if (status.getConditions() != null && status.getConditions().stream()
+                .anyMatch(condition -> "Complete".equals(condition.getType()) && "True".equals(condition.getStatus()))) {
+            return true;
+        }
+        int succeeded = status.getSucceeded() == null ? 0 : status.getSucceeded();
+        Integer completions = job.getSpec() == null ? null : job.getSpec().getCompletions();
+        if (completions != null) {
+            return succeeded >= completions;
         }
+        return succeeded > 0 && (status.getActive() == null || status.getActive() == 0);
     }
 
+    /**
+     * Waits for as long as the job may run, if it has an active deadline and the manifest leaves the wait to the
+     * default.
+     */
     @Override
-    public void delete() throws ResourceActionException {
+    protected int getMaxWaitSeconds() {
 
-        if (resourceExists()) {
-            executeDelete();
-            waitUntilDeleted();
+        Long deadline = jobFile.getSpec() == null ? null : jobFile.getSpec().getActiveDeadlineSeconds();
+        if (deadline == null || isMaxWaitConfigured()) {
+            return super.getMaxWaitSeconds();
         }
+        return (int) Math.min(Integer.MAX_VALUE, deadline + DEADLINE_GRACE_SECONDS);
+    }
+
+    @Override
+    protected V1Job getDesired() {
+        return jobFile;
     }
 
-    private void waitUntilDeleted() throws ResourceActionException {
+    @Override
+    protected V1Job patch(Object patch) throws ApiException {
 
-        System.out.println(String.format("waiting for Job '%s' to be deleted", jobFile.getMetadata().getName()));
-        Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+        return api.patchNamespacedJob(jobFile.getMetadata().getName(), namespace, patch, null);
+    }
 
-        pollWait();
+    @Override
+    protected boolean canRecreate() {
+        return true;
+    }
 
-        while (resourceExists()) {
-            if (Instant.now().isAfter(maxTime)) {
-                throw new ResourceActionException(String.format("Job '%s' was not deleted in %d seconds", jobFile.getMetadata().getName(), maxWaitSeconds));
-            }
-            pollWait();
+    @Override
+    protected void create() throws ResourceActionException {
+
+        System.out.println(String.format("creating Job '%s'", jobFile.getMetadata().getName()));
+        try {
+            api.createNamespacedJob(namespace, jobFile, null);
+        } catch (ApiException e) {
+            throw new ResourceActionException("Unable to create Job: " + e.getResponseBody(), e);
         }
     }
 
-    private void executeDelete() throws ResourceActionException {
+    @Override
+    protected void executeDelete() throws ResourceActionException {
 
         System.out.println(String.format("deleting Job '%s'", jobFile.getMetadata().getName()));
         try {
-            V1DeleteOptions deleteOptions = new V1DeleteOptions();
-            deleteOptions.propagationPolicy("Foreground");
-            api.deleteNamespacedJob(jobFile.getMetadata().getName(), namespace, deleteOptions, null, null, null, "Foreground");
+            V1DeleteOptions deleteOptions = deleteOptions();
+            api.deleteNamespacedJob(jobFile.getMetadata().getName(), namespace, deleteOptions, null, null, null, deleteOptions.getPropagationPolicy());
         } catch (JsonSyntaxException e) {
             //https://github.com/kubernetes-client/java/issues/205
             //no-op
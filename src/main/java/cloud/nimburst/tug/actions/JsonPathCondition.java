@@ -0,0 +1,136 @@
+package cloud.nimburst.tug.actions;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import io.kubernetes.client.JSON;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A condition on a resource written like the JSONPath of kubectl wait: {.path} holds once the path has a value other
+ * than false, {.path}=value once its value is the one given.
+ * <p>
+ * Paths are a subset of JSONPath: field names, each optionally followed by an array index such as [0] or by a filter
+ * selecting the first element with a given field value, such as [?(@.type=="Ready")].
+ */
+final class JsonPathCondition {
+
+    private static final Gson GSON = new JSON().getGson();
+    private static final Pattern EXPRESSION = Pattern.compile("\\{(.+)\\}(?:=(.*))?");
+    private static final Pattern SEGMENT = Pattern.compile(
+            "\\.([\\w-]+)(?:\\[(\\d+)\\]|\\[\\?\\(@\\.([\\w-]+)==[\"']?([^\"')]*)[\"']?\\)\\])?");
+
+    private final String expression;
+    private final List<Segment> segments;
+    private final String value;
+
+    private JsonPathCondition(String expression, List<Segment> segments, String value) {
+
+        this.expression = expression;
+        this.segments = segments;
+        this.value = value;
+    }
+
+    /**
+     * Parses a condition.
+     *
+     * @param expression the condition
+     * @return the parsed condition
+     * @throws IllegalArgumentException if the condition is not in the supported form
+     */
+    static JsonPathCondition parse(String expression) {
+
+        Matcher matcher = EXPRESSION.matcher(expression);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid readiness condition, expected {.path} or {.path}=value: " + expression);
+        }
+        String path = matcher.group(1);
+        List<Segment> segments = new ArrayList<>();
+        Matcher segment = SEGMENT.matcher(path);
+        int end = 0;
+        while (segment.find() && segment.start() == end) {
+            segments.add(new Segment(segment.group(1),
+                    segment.group(2) == null ? -1 : Integer.parseInt(segment.group(2)),
+                    segment.group(3), segment.group(4)));
+            end = segment.end();
+        }
+        if (end != path.length()) {
+            throw new IllegalArgumentException("Unsupported path in readiness condition: " + expression);
+        }
+        return new JsonPathCondition(expression, segments, matcher.group(2));
+    }
+
+    /**
+     * Tests the condition against a resource.
+     *
+     * @param resource the resource as returned by the API server
+     * @return true if the condition holds
+     */
+    boolean test(Object resource) {
+
+        JsonElement element = GSON.toJsonTree(resource);
+        for (Segment segment : segments) {
+            element = segment.select(element);
+            if (element == null || element.isJsonNull()) {
+                return false;
+            }
+        }
+        if (value == null) {
+            return !(element.isJsonPrimitive() && element.getAsJsonPrimitive().isBoolean() && !element.getAsBoolean());
+        }
+        return element.isJsonPrimitive() && value.equals(element.getAsString());
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * A field of an object, optionally followed by an index or filter on the array it holds.
+     */
+    private static final class Segment {
+
+        private final String field;
+        private final int index;
+        private final String filterField;
+        private final String filterValue;
+
+        private Segment(String field, int index, String filterField, String filterValue) {
+
+            this.field = field;
+            this.index = index;
+            this.filterField = filterField;
+            this.filterValue = filterValue;
+        }
+
+        private JsonElement select(JsonElement element) {
+
+            if (!element.isJsonObject()) {
+                return null;
+            }
+            JsonElement selected = element.getAsJsonObject().get(field);
+            if (selected == null || (index < 0 && filterField == null)) {
+                return selected;
+            }
+            if (!selected.isJsonArray()) {
+                return null;
+            }
+            JsonArray array = selected.getAsJsonArray();
+            if (index >= 0) {
+                return index < array.size() ? array.get(index) : null;
+            }
+            for (JsonElement item : array) {
+                JsonElement candidate = item.isJsonObject() ? item.getAsJsonObject().get(filterField) : null;
+                if (candidate != null && candidate.isJsonPrimitive() && filterValue.equals(candidate.getAsString())) {
+                    return item;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package cloud.nimburst.tug.actions;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The items returned by a list call together with the resource version of the list, which a watch can resume from.
+ *
+ * @param <T> the model class of the items
+ */
+class Listing<T> {
+
+    private final List<T> items;
+    private final String resourceVersion;
+
+    /**
+     * Instantiates a new Listing.
+     *
+     * @param items           the listed items, may be null
+     * @param resourceVersion the resource version of the list
+     */
+    Listing(List<T> items, String resourceVersion) {
+
+        this.items = items == null ? Collections.emptyList() : items;
+        this.resourceVersion = resourceVersion;
+    }
+
+    /**
+     * Gets the listed items.
+     *
+     * @return the items
+     */
+    List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Gets the resource version of the list.
+     *
+     * @return the resource version
+     */
+    String getResourceVersion() {
+        return resourceVersion;
+    }
+}
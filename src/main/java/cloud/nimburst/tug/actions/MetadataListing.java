@@ -0,0 +1,73 @@
+package cloud.nimburst.tug.actions;
+
+import cloud.nimburst.tug.client.PayloadStats;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.squareup.okhttp.Call;
+import io.kubernetes.client.ApiClient;
+import io.kubernetes.client.ApiException;
+import io.kubernetes.client.JSON;
+import io.kubernetes.client.Pair;
+import io.kubernetes.client.models.V1ObjectMeta;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lists only the metadata of resources, for checks which need to know what exists but nothing else about it. The server
+ * sends a PartialObjectMetadataList, which leaves out the spec and status of every item.
+ */
+final class MetadataListing {
+
+    private static final Gson GSON = new JSON().getGson();
+    private static final String[] AUTH_NAMES = {"BearerToken"};
+
+    private MetadataListing() {
+    }
+
+    /**
+     * Lists the metadata of the resources in a collection.
+     *
+     * @param client          the client to list with
+     * @param path            the API path of the collection
+     * @param fieldSelector   the field selector restricting the list, may be null
+     * @param labelSelector   the label selector restricting the list, may be null
+     * @param resourceVersion the resource version the list must be at least as new as, "0" to serve it from the watch
+     *                        cache or null for a quorum read
+     * @param stats           where the number of listed items is recorded
+     * @return the metadata of the listed resources, by name
+     * @throws ApiException if the list call fails
+     */
+    static Map<String, V1ObjectMeta> list(ApiClient client, String path, String fieldSelector, String labelSelector,
+                                          String resourceVersion, PayloadStats stats) throws ApiException {
+
+        List<Pair> query = new ArrayList<>();
+        query.add(new Pair("includeUninitialized", "true"));
+        if (fieldSelector != null) {
+            query.add(new Pair("fieldSelector", fieldSelector));
+        }
+        if (labelSelector != null) {
+            query.add(new Pair("labelSelector", labelSelector));
+        }
+        if (resourceVersion != null) {
+            query.add(new Pair("resourceVersion", resourceVersion));
+        }
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept", PayloadStats.METADATA_ACCEPT);
+        Call call = client.buildCall(path, "GET", query, new ArrayList<>(), null, headers, new HashMap<>(), AUTH_NAMES, null);
+        JsonObject list = client.<JsonObject>execute(call, JsonObject.class).getData();
+
+        Map<String, V1ObjectMeta> items = new HashMap<>();
+        if (list != null && list.has("items") && list.get("items").isJsonArray()) {
+            for (JsonElement item : list.getAsJsonArray("items")) {
+                V1ObjectMeta metadata = GSON.fromJson(item.getAsJsonObject().get("metadata"), V1ObjectMeta.class);
+                items.put(metadata.getName(), metadata);
+            }
+        }
+        stats.recordItems(path, true, items.size());
+        return items;
+    }
+}
@@ -1,116 +1,131 @@
 package cloud.nimburst.tug.actions;
 
 import cloud.nimburst.tug.ResourceAction;
+import cloud.nimburst.tug.ResourceActionContext;
 import cloud.nimburst.tug.ResourceActionException;
 import cloud.nimburst.tug.TugManifest;
 import cloud.nimburst.tug.YamlParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import com.squareup.okhttp.Call;
+import io.kubernetes.client.ApiClient;
 import io.kubernetes.client.ApiException;
 import io.kubernetes.client.apis.CoreV1Api;
 import io.kubernetes.client.models.V1DeleteOptions;
 import io.kubernetes.client.models.V1Namespace;
 import io.kubernetes.client.models.V1NamespaceList;
+import io.kubernetes.client.models.V1ObjectMeta;
+import io.kubernetes.client.proto.V1;
+import io.kubernetes.client.util.Watch;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.lang.reflect.Type;
 
 /**
  * {@link ResourceAction} for managing a Namespace resource
  */
-public class NamespaceResourceAction implements ResourceAction {
+public class NamespaceResourceAction extends AbstractResourceAction<V1Namespace> {
+
+    private static final Type WATCH_TYPE = new TypeToken<Watch.Response<V1Namespace>>() {}.getType();
 
     private final V1Namespace namespaceFile;
-    private final CoreV1Api api = new CoreV1Api();
-    private final int maxWaitSeconds;
+    private final CoreV1Api api;
 
     /**
      * Instantiates a new NamespaceResourceAction.
      *
      * @param resource   the content of the yaml resource configuration
      * @param deployment the deployment configuration from the manifest
+     * @param context    the shared context of the run
      */
-    public NamespaceResourceAction(JsonNode resource, TugManifest.Deployment deployment) {
+    public NamespaceResourceAction(JsonNode resource, TugManifest.Deployment deployment, ResourceActionContext context) {
+        super("Namespace", deployment, context);
+        api = new CoreV1Api(getApiClient());
         this.namespaceFile = YamlParser.transformYaml(resource, V1Namespace.class, false);
-        this.maxWaitSeconds = deployment.getMaxWaitSeconds();
     }
 
-    private boolean resourceExists() throws ResourceActionException {
+    @Override
+    protected String getName() {
+        return namespaceFile.getMetadata().getName();
+    }
 
-        String selector = "metadata.name=" + namespaceFile.getMetadata().getName();
-        V1NamespaceList result;
-        try {
-            result = api.listNamespace(null, null, selector, true, null, null, null, null, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to get Namespace info: " + e.getResponseBody());
-        }
-        return result.getItems().size() > 0;
+    @Override
+    public String getOwnedNamespace() {
+        return getName();
     }
 
     @Override
-    public void makeReady() throws ResourceActionException {
+    protected V1ObjectMeta getMetadata(V1Namespace resource) {
+        return resource.getMetadata();
+    }
 
-        if (!resourceExists()) {
-            create();
-            waitUntilCreated();
-        }
+    @Override
+    protected Listing<V1Namespace> list(String fieldSelector, String labelSelector, String resourceVersion) throws ApiException {
+
+        V1NamespaceList result = api.listNamespace(null, null, fieldSelector, true, labelSelector, null, resourceVersion, null, null);
+        return new Listing<>(result.getItems(), result.getMetadata().getResourceVersion());
     }
 
-    private void create() throws ResourceActionException {
-        System.out.println(String.format("creating Namespace '%s'", namespaceFile.getMetadata().getName()));
-        try {
-            api.createNamespace(namespaceFile, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to create Namespace: " + e.getResponseBody(), e);
-        }
+    @Override
+    protected String listPath() {
+
+        return "/api/v1/namespaces";
     }
 
-    private void waitUntilCreated() throws ResourceActionException {
+    /**
+     * Namespaces cannot be deleted by collection.
+     */
+    @Override
+    protected boolean canDeleteCollection() {
 
-        System.out.println(String.format("waiting for Namespace '%s' to be created", namespaceFile.getMetadata().getName()));
-        Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+        return false;
+    }
 
-        pollWait();
+    @Override
+    protected ProtoListing<V1Namespace> protoListing() {
 
-        while (!resourceExists()) {
-            if (Instant.now().isAfter(maxTime)) {
-                throw new ResourceActionException(String.format("Namespace '%s' was not created in %d seconds", namespaceFile.getMetadata().getName(), maxWaitSeconds));
-            }
-            pollWait();
-        }
+        return new ProtoListing<>(V1.NamespaceList::newBuilder, listPath(), V1Namespace.class);
     }
 
     @Override
-    public void delete() throws ResourceActionException {
+    protected Call watchCall(ApiClient client, String fieldSelector, String resourceVersion, int timeoutSeconds) throws ApiException {
 
-        if (resourceExists()) {
-            executeDelete();
-            waitUntilDeleted();
-        }
+        return new CoreV1Api(client).listNamespaceCall(null, null, fieldSelector, true, null, null, resourceVersion, timeoutSeconds, true, null, null);
     }
 
-    private void waitUntilDeleted() throws ResourceActionException {
+    @Override
+    protected Type watchType() {
+        return WATCH_TYPE;
+    }
 
-        System.out.println(String.format("waiting for Namespace '%s' to be deleted", namespaceFile.getMetadata().getName()));
-        Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+    @Override
+    protected V1Namespace getDesired() {
+        return namespaceFile;
+    }
 
-        pollWait();
+    @Override
+    protected V1Namespace patch(Object patch) throws ApiException {
 
-        while (resourceExists()) {
-            if (Instant.now().isAfter(maxTime)) {
-                throw new ResourceActionException(String.format("Namespace '%s' was not deleted in %d seconds", namespaceFile.getMetadata().getName(), maxWaitSeconds));
-            }
-            pollWait();
+        return api.patchNamespace(namespaceFile.getMetadata().getName(), patch, null);
+    }
+
+    @Override
+    protected void create() throws ResourceActionException {
+        System.out.println(String.format("creating Namespace '%s'", namespaceFile.getMetadata().getName()));
+        try {
+            api.createNamespace(namespaceFile, null);
+        } catch (ApiException e) {
+            throw new ResourceActionException("Unable to create Namespace: " + e.getResponseBody(), e);
         }
     }
 
-    private void executeDelete() throws ResourceActionException {
+    @Override
+    protected void executeDelete() throws ResourceActionException {
 
         System.out.println(String.format("deleting Namespace '%s'", namespaceFile.getMetadata().getName()));
         try {
-            V1DeleteOptions deleteOptions = new V1DeleteOptions();
-            deleteOptions.propagationPolicy("Foreground");
-            api.deleteNamespace(namespaceFile.getMetadata().getName(), deleteOptions, null, null, null, "Foreground");
+            V1DeleteOptions deleteOptions = deleteOptions();
+            api.deleteNamespace(namespaceFile.getMetadata().getName(), deleteOptions, null, null, null, deleteOptions.getPropagationPolicy());
         } catch (JsonSyntaxException e) {
             //https://github.com/kubernetes-client/java/issues/205
             //no-op
@@ -118,14 +133,4 @@ public class NamespaceResourceAction implements ResourceAction {
             throw new ResourceActionException("Unable to delete Namespace: " + e.getResponseBody(), e);
         }
     }
-
-    private void pollWait() {
-
-        try {
-            Thread.sleep(1000L);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Thread was interrupted while checking Namespace status", e);
-        }
-    }
-}
\ No newline at end of file
+}
@@ -1,165 +1,252 @@
 package cloud.nimburst.tug.actions;
 
 import cloud.nimburst.tug.ResourceAction;
+import cloud.nimburst.tug.ResourceActionContext;
 import cloud.nimburst.tug.ResourceActionException;
 import cloud.nimburst.tug.TugManifest;
 import cloud.nimburst.tug.YamlParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import com.squareup.okhttp.Call;
+import io.kubernetes.client.ApiClient;
 import io.kubernetes.client.ApiException;
 import io.kubernetes.client.apis.CoreV1Api;
+import io.kubernetes.client.models.V1Container;
+import io.kubernetes.client.models.V1ContainerStateTerminated;
+import io.kubernetes.client.models.V1ContainerStateWaiting;
 import io.kubernetes.client.models.V1ContainerStatus;
 import io.kubernetes.client.models.V1DeleteOptions;
+import io.kubernetes.client.models.V1ObjectMeta;
 import io.kubernetes.client.models.V1Pod;
 import io.kubernetes.client.models.V1PodList;
+import io.kubernetes.client.models.V1PodSpec;
+import io.kubernetes.client.proto.V1;
+import io.kubernetes.client.util.Watch;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * {@link ResourceAction} for managing a Pod resource
  */
-public class PodResourceAction implements ResourceAction {
+public class PodResourceAction extends AbstractResourceAction<V1Pod> {
+
+    private static final Type WATCH_TYPE = new TypeToken<Watch.Response<V1Pod>>() {}.getType();
+    // waiting reasons the kubelet does not get out of without a change to the pod or its configuration
+    private static final Set<String> TERMINAL_REASONS = new HashSet<>(Arrays.asList(
+            "ImagePullBackOff", "ErrImageNeverPull", "InvalidImageName", "CrashLoopBackOff", "CreateContainerConfigError"));
+    private static final int MAX_RESTARTS = 3;
 
     private final String namespace;
     private final V1Pod podFile;
-    private final CoreV1Api api = new CoreV1Api();
-    private final int maxWaitSeconds;
+    private final CoreV1Api api;
+    private final Set<String> readyContainers;
 
     /**
      * Instantiates a new PodResourceAction.
      *
      * @param resource   the content of the yaml resource configuration
      * @param deployment the deployment configuration from the manifest
+     * @param context    the shared context of the run
+     * @throws IllegalArgumentException if the readiness names containers the pod does not have
      */
-    public PodResourceAction(JsonNode resource, TugManifest.Deployment deployment) {
+    public PodResourceAction(JsonNode resource, TugManifest.Deployment deployment, ResourceActionContext context) {
+        super("Pod", deployment, context);
+        api = new CoreV1Api(getApiClient());
+        readyContainers = new HashSet<>(deployment.getReadiness().getContainers());
         podFile = YamlParser.transformYaml(resource, V1Pod.class, false);
         String namespace = podFile.getMetadata().getNamespace();
         this.namespace = namespace == null ? "default" : namespace;
-        this.maxWaitSeconds = deployment.getMaxWaitSeconds();
+        List<String> unknown = unknownContainers(podFile.getSpec(), readyContainers);
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException(String.format("Readiness of Pod '%s' names containers it does not have: %s",
+                    getName(), String.join(", ", unknown)));
+        }
     }
 
-    private boolean resourceExists() throws ResourceActionException {
+    /**
+     * Finds the containers waited on which the pod does not have. Init containers never count as ready, so they are
+     * not valid either.
+     *
+     * @param spec       the pod spec
+     * @param containers the names of the containers waited on
+     * @return the unknown names in order
+     */
+    static List<String> unknownContainers(V1PodSpec spec, Set<String> containers) {
 
-        String selector = "metadata.name=" + podFile.getMetadata().getName();
-        V1PodList result;
-        try {
-            result = api.listNamespacedPod(namespace, null, null, selector, true, null, null, null, null, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to get Pod info: " + e.getResponseBody());
-        }
-        return result.getItems().size() > 0;
+        Set<String> declared = Optional.ofNullable(spec).map(V1PodSpec::getContainers).orElse(Collections.emptyList()).stream()
+                .map(V1Container::getName)
+                .collect(Collectors.toSet());
+        return containers.stream()
+                .filter(name -> !declared.contains(name))
+                .sorted()
+                .collect(Collectors.toList());
     }
 
-    private boolean resourceReady() throws ResourceActionException {
-
-        V1Pod pod;
-        try {
-            pod = api.readNamespacedPod(podFile.getMetadata().getName(), namespace, null, null, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to get Pod info: " + e.getResponseBody(), e);
-        }
-        List<V1ContainerStatus> statuses = pod.getStatus().getContainerStatuses();
-        if(statuses == null) {
-            return false;
-        }
-        return statuses.stream().allMatch(status -> status != null && status.isReady());
+    @Override
+    protected String getName() {
+        return podFile.getMetadata().getName();
     }
 
-    private void waitUntilReady() throws ResourceActionException {
+    @Override
+    public String getNamespace() {
+        return namespace;
+    }
 
-        if (!resourceReady()) {
-            System.out.println(String.format("waiting for Pod '%s' to be ready", podFile.getMetadata().getName()));
-            Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+    @Override
+    protected V1ObjectMeta getMetadata(V1Pod resource) {
+        return resource.getMetadata();
+    }
 
-            pollWait();
+    @Override
+    protected Listing<V1Pod> list(String fieldSelector, String labelSelector, String resourceVersion) throws ApiException {
 
-            while (!resourceReady()) {
-                if (Instant.now().isAfter(maxTime)) {
-                    throw new ResourceActionException(String.format("Pod '%s' was not ready in %d seconds", podFile.getMetadata().getName(), maxWaitSeconds));
-                }
-                pollWait();
-            }
-        }
+        V1PodList result = api.listNamespacedPod(namespace, null, null, fieldSelector, true, labelSelector, null, resourceVersion, null, null);
+        return new Listing<>(result.getItems(), result.getMetadata().getResourceVersion());
     }
 
-    private void pollWait() {
+    @Override
+    protected String listPath() {
 
-        try {
-            Thread.sleep(1000L);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Thread was interrupted while checking Pod status", e);
-        }
+        return "/api/v1/namespaces/" + namespace + "/pods";
     }
 
     @Override
-    public void makeReady() throws ResourceActionException {
+    protected ProtoListing<V1Pod> protoListing() {
 
-        if (!resourceExists()) {
-            create();
-            waitUntilCreated();
-        }
-        waitUntilReady();
+        return new ProtoListing<>(V1.PodList::newBuilder, listPath(), V1Pod.class);
     }
 
-    private void create() throws ResourceActionException {
+    @Override
+    protected Call watchCall(ApiClient client, String fieldSelector, String resourceVersion, int timeoutSeconds) throws ApiException {
 
-        System.out.println(String.format("creating Pod '%s'", podFile.getMetadata().getName()));
-        try {
-            api.createNamespacedPod(namespace, podFile, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to create Pod: " + e.getResponseBody(), e);
-        }
+        return new CoreV1Api(client).listNamespacedPodCall(namespace, null, null, fieldSelector, true, null, null, resourceVersion, timeoutSeconds, true, null, null);
     }
 
-    private void waitUntilCreated() throws ResourceActionException {
+    @Override
+    protected Type watchType() {
+        return WATCH_TYPE;
+    }
+
+    @Override
+    protected boolean isReady(V1Pod pod) throws ResourceActionException {
 
-        System.out.println(String.format("waiting for Pod '%s' to be created", podFile.getMetadata().getName()));
-        Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+        String failure = failure(pod, readyContainers);
+        if (failure != null) {
+            throw new ResourceActionException(String.format("Pod '%s' can never become ready: %s", getName(), failure));
+        }
+        List<V1ContainerStatus> statuses = pod.getStatus() == null ? null : pod.getStatus().getContainerStatuses();
+        if(statuses == null) {
+            return false;
+        }
+        if(!readyContainers.isEmpty()) {
+            // only the named containers count, the others may still be starting or even failing
+            long ready = statuses.stream()
+                    .filter(status -> status != null && readyContainers.contains(status.getName()) && Boolean.TRUE.equals(status.isReady()))
+                    .count();
+            return ready == readyContainers.size();
+        }
+        return statuses.stream().allMatch(status -> status != null && status.isReady());
+    }
 
-        pollWait();
+    /**
+     * Finds why a pod can never become ready: it has failed, or one of its containers is stuck in a state the kubelet
+     * only retries with growing back off, or keeps failing after restarts. Containers whose image was just changed in
+     * the spec are skipped, their status still describes the previous image.
+     *
+     * @param pod        the pod
+     * @param containers the containers which must become ready, or an empty set for all of them; init containers are
+     *                   always checked since the others only start after them
+     * @return the reason or null if the pod may still become ready
+     */
+    static String failure(V1Pod pod, Set<String> containers) {
 
-        while (!resourceExists()) {
-            if (Instant.now().isAfter(maxTime)) {
-                throw new ResourceActionException(String.format("Pod '%s' was not created in %d seconds", podFile.getMetadata().getName(), maxWaitSeconds));
+        if (pod.getStatus() == null) {
+            return null;
+        }
+        if ("Failed".equals(pod.getStatus().getPhase())) {
+            return String.format("it has failed: %s", pod.getStatus().getReason() == null ? pod.getStatus().getMessage() : pod.getStatus().getReason());
+        }
+        List<V1ContainerStatus> statuses = new ArrayList<>();
+        if (pod.getStatus().getInitContainerStatuses() != null) {
+            statuses.addAll(pod.getStatus().getInitContainerStatuses());
+        }
+        if (pod.getStatus().getContainerStatuses() != null) {
+            pod.getStatus().getContainerStatuses().stream()
+                    .filter(status -> containers.isEmpty() || containers.contains(status.getName()))
+                    .forEach(statuses::add);
+        }
+        Map<String, String> images = new HashMap<>();
+        if (pod.getSpec() != null) {
+            Stream.concat(Optional.ofNullable(pod.getSpec().getInitContainers()).orElse(Collections.emptyList()).stream(),
+                    Optional.ofNullable(pod.getSpec().getContainers()).orElse(Collections.emptyList()).stream())
+                    .forEach(container -> images.put(container.getName(), container.getImage()));
+        }
+        for (V1ContainerStatus status : statuses) {
+            String image = images.get(status.getName());
+            if (image != null && !image.equals(status.getImage())) {
+                continue;
+            }
+            V1ContainerStateWaiting waiting = status.getState() == null ? null : status.getState().getWaiting();
+            if (waiting != null && TERMINAL_REASONS.contains(waiting.getReason())) {
+                return String.format("container '%s' is waiting in %s%s", status.getName(), waiting.getReason(),
+                        waiting.getMessage() == null ? "" : ": " + waiting.getMessage());
+            }
+            V1ContainerStateTerminated terminated = status.getLastState() == null ? null : status.getLastState().getTerminated();
+            if (!Boolean.TRUE.equals(status.isReady()) && status.getRestartCount() != null && status.getRestartCount() >= MAX_RESTARTS
+                    && terminated != null && terminated.getExitCode() != null && terminated.getExitCode() != 0) {
+                return String.format("container '%s' has restarted %d times, last exiting with code %d", status.getName(),
+                        status.getRestartCount(), terminated.getExitCode());
             }
-            pollWait();
         }
+        return null;
     }
 
     @Override
-    public void delete() throws ResourceActionException {
-
-        if (resourceExists()) {
-            executeDelete();
-            waitUntilDeleted();
-        }
+    protected V1Pod getDesired() {
+        return podFile;
     }
 
-    private void waitUntilDeleted() throws ResourceActionException {
+    @Override
+    protected V1Pod patch(Object patch) throws ApiException {
 
-        System.out.println(String.format("waiting for Pod '%s' to be deleted", podFile.getMetadata().getName()));
-        Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+        return api.patchNamespacedPod(podFile.getMetadata().getName(), namespace, patch, null);
+    }
 
-        pollWait();
+    @Override
+    protected boolean canRecreate() {
+        return true;
+    }
 
-        while (resourceExists()) {
-            if (Instant.now().isAfter(maxTime)) {
-                throw new ResourceActionException(String.format("Pod '%s' was not deleted in %d seconds", podFile.getMetadata().getName(), maxWaitSeconds));
-            }
-            pollWait();
+    @Override
+    protected void create() throws ResourceActionException {
+
+        System.out.println(String.format("creating Pod '%s'", podFile.getMetadata().getName()));
+        try {
+            api.createNamespacedPod(namespace, podFile, null);
+        } catch (ApiException e) {
+            throw new ResourceActionException("Unable to create Pod: " + e.getResponseBody(), e);
         }
     }
 
-    private void executeDelete() throws ResourceActionException {
+    @Override
+    protected void executeDelete() throws ResourceActionException {
 
         System.out.println(String.format("deleting Pod '%s'", podFile.getMetadata().getName()));
         try {
-            V1DeleteOptions deleteOptions = new V1DeleteOptions();
-            deleteOptions.propagationPolicy("Foreground");
-            api.deleteNamespacedPod(podFile.getMetadata().getName(), namespace, deleteOptions, null, null, null, "Foreground");
+            V1DeleteOptions deleteOptions = deleteOptions();
+            api.deleteNamespacedPod(podFile.getMetadata().getName(), namespace, deleteOptions, null, null, null, deleteOptions.getPropagationPolicy());
         } catch (JsonSyntaxException e) {
             //https://github.com/kubernetes-client/java/issues/205
             //no-op
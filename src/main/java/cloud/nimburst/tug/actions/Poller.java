@@ -0,0 +1,241 @@
+package cloud.nimburst.tug.actions;
+
+import cloud.nimburst.tug.ResourceActionException;
+import io.kubernetes.client.ApiException;
+import io.kubernetes.client.models.V1ObjectMeta;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Polls the state of all resources of one kind in one namespace being waited on with a single list call per tick,
+ * shared by every action on that kind and namespace, for clusters where watches are not available.
+ * <p>
+ * The list can be restricted with a label selector. A waited on resource missing from such a list may just not carry
+ * the labels, so it is read by name before being taken as gone.
+ * <p>
+ * While every wait only needs to know whether its resource exists, only the metadata of the resources is listed. Each
+ * wait says whether it can be answered from the watch cache of the API server, and a poll reads from the cache only if
+ * all current waits can.
+ *
+ * @param <T> the model class of the resources
+ */
+class Poller<T> implements AutoCloseable {
+
+    private final String description;
+    private final Lister<T> lister;
+    private final Reader<T> reader;
+    private final MetadataLister metadataLister;
+    private final String labelSelector;
+    private final Function<T, V1ObjectMeta> metadata;
+    private final ScheduledExecutorService scheduler;
+    private final long intervalMillis;
+
+    private final Map<String, List<Waiter<T>>> waiters = new HashMap<>();
+    private final Map<String, List<Waiter<Boolean>>> existenceWaiters = new HashMap<>();
+    private final Set<Waiter<?>> strongWaiters = new HashSet<>();
+    private ScheduledFuture<?> tick;
+    private boolean closed;
+
+    /**
+     * Instantiates a new Poller. It only polls while resources are waited on.
+     *
+     * @param description    the kind and namespace polled, for messages
+     * @param lister         lists resources of the kind in the namespace matching a label selector
+     * @param reader         reads a single resource of the kind in the namespace by name
+     * @param metadataLister lists the metadata of resources of the kind in the namespace matching a field and label
+     *                       selector
+     * @param labelSelector  the label selector restricting the list, or null to list all resources
+     * @param metadata       gets the metadata of a resource
+     * @param scheduler      the scheduler the polls run on
+     * @param intervalMillis the time between polls
+     */
+    Poller(String description, Lister<T> lister, Reader<T> reader, MetadataLister metadataLister, String labelSelector,
+           Function<T, V1ObjectMeta> metadata, ScheduledExecutorService scheduler, long intervalMillis) {
+
+        this.description = description;
+        this.lister = lister;
+        this.reader = reader;
+        this.metadataLister = metadataLister;
+        this.labelSelector = labelSelector;
+        this.metadata = metadata;
+        this.scheduler = scheduler;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Waits for the polled state of a resource to satisfy a condition, checked on each poll from the next one on.
+     * Completing the returned future from outside, for example on timeout, stops the wait.
+     *
+     * @param name      the resource name
+     * @param condition the condition, given null while the resource does not exist
+     * @param cached    whether the resource may be read from the watch cache
+     * @return a future completed once the condition holds, or failed if the resource could not be polled
+     */
+    CompletableFuture<Void> await(String name, ResourceStatus.Condition<T> condition, boolean cached) {
+
+        return add(waiters, name, new Waiter<>(condition), cached);
+    }
+
+    /**
+     * Waits for a resource to exist or not, checked on each poll from the next one on. Completing the returned future
+     * from outside, for example on timeout, stops the wait.
+     *
+     * @param name    the resource name
+     * @param present whether to wait for the resource to exist or to be gone
+     * @param cached  whether the resource may be read from the watch cache
+     * @return a future completed once the resource exists or is gone, or failed if it could not be polled
+     */
+    CompletableFuture<Void> awaitExistence(String name, boolean present, boolean cached) {
+
+        return add(existenceWaiters, name, new Waiter<>(exists -> exists == present), cached);
+    }
+
+    private <R> CompletableFuture<Void> add(Map<String, List<Waiter<R>>> map, String name, Waiter<R> waiter, boolean cached) {
+
+        synchronized (this) {
+            map.computeIfAbsent(name, n -> new ArrayList<>()).add(waiter);
+            if (!cached) {
+                strongWaiters.add(waiter);
+            }
+            if (tick == null && !closed) {
+                tick = scheduler.schedule(this::poll, intervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        waiter.getResult().whenComplete((r, e) -> remove(map, name, waiter));
+        return waiter.getResult();
+    }
+
+    private synchronized <R> void remove(Map<String, List<Waiter<R>>> map, String name, Waiter<R> waiter) {
+
+        strongWaiters.remove(waiter);
+        List<Waiter<R>> list = map.get(name);
+        if (list != null) {
+            list.remove(waiter);
+            if (list.isEmpty()) {
+                map.remove(name);
+            }
+        }
+    }
+
+    private static <R> Map<String, List<Waiter<R>>> copy(Map<String, List<Waiter<R>>> map) {
+
+        Map<String, List<Waiter<R>>> copy = new HashMap<>();
+        map.forEach((name, list) -> copy.put(name, new ArrayList<>(list)));
+        return copy;
+    }
+
+    private void poll() {
+
+        Map<String, List<Waiter<T>>> waiting;
+        Map<String, List<Waiter<Boolean>>> existence;
+        boolean cached;
+        synchronized (this) {
+            waiting = copy(waiters);
+            existence = copy(existenceWaiters);
+            cached = strongWaiters.isEmpty();
+        }
+        try {
+            if (!waiting.isEmpty()) {
+                Map<String, T> listed = new HashMap<>();
+                for (T item : lister.list(labelSelector, cached).getItems()) {
+                    listed.put(metadata.apply(item).getName(), item);
+                }
+                for (Map.Entry<String, List<Waiter<T>>> entry : waiting.entrySet()) {
+                    T resource = listed.get(entry.getKey());
+                    if (resource == null && labelSelector != null) {
+                        resource = reader.read(entry.getKey(), cached);
+                        if (resource != null) {
+                            listed.put(entry.getKey(), resource);
+                        }
+                    }
+                    for (Waiter<T> waiter : entry.getValue()) {
+                        waiter.check(resource);
+                    }
+                }
+                for (Map.Entry<String, List<Waiter<Boolean>>> entry : existence.entrySet()) {
+                    boolean exists = listed.containsKey(entry.getKey())
+                            || (labelSelector != null && reader.read(entry.getKey(), cached) != null);
+                    entry.getValue().forEach(waiter -> waiter.check(exists));
+                }
+            } else if (!existence.isEmpty()) {
+                Set<String> listed = metadataLister.list(null, labelSelector, cached);
+                for (Map.Entry<String, List<Waiter<Boolean>>> entry : existence.entrySet()) {
+                    boolean exists = listed.contains(entry.getKey())
+                            || (labelSelector != null && !metadataLister.list("metadata.name=" + entry.getKey(), null, cached).isEmpty());
+                    entry.getValue().forEach(waiter -> waiter.check(exists));
+                }
+            }
+        } catch (ApiException e) {
+            ResourceActionException failure = new ResourceActionException(
+                    String.format("Unable to poll %s: %s", description, e.getResponseBody()), e);
+            fail(waiting, failure);
+            fail(existence, failure);
+        } catch (RuntimeException e) {
+            fail(waiting, e);
+            fail(existence, e);
+        } finally {
+            synchronized (this) {
+                tick = (waiters.isEmpty() && existenceWaiters.isEmpty()) || closed
+                        ? null
+                        : scheduler.schedule(this::poll, intervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static <R> void fail(Map<String, List<Waiter<R>>> waiting, Throwable e) {
+
+        waiting.values().forEach(list -> list.forEach(waiter -> waiter.getResult().completeExceptionally(e)));
+    }
+
+    @Override
+    public synchronized void close() {
+
+        closed = true;
+        if (tick != null) {
+            tick.cancel(false);
+            tick = null;
+        }
+    }
+
+    /**
+     * Lists resources of the kind in the namespace, from the watch cache if cached is set.
+     *
+     * @param <T> the model class of the resources
+     */
+    @FunctionalInterface
+    interface Lister<T> {
+
+        Listing<T> list(String labelSelector, boolean cached) throws ApiException;
+    }
+
+    /**
+     * Lists the names of resources of the kind in the namespace, without transferring the resources themselves, from
+     * the watch cache if cached is set.
+     */
+    @FunctionalInterface
+    interface MetadataLister {
+
+        Set<String> list(String fieldSelector, String labelSelector, boolean cached) throws ApiException;
+    }
+
+    /**
+     * Reads a single resource of the kind in the namespace, from the watch cache if cached is set.
+     *
+     * @param <T> the model class of the resources
+     */
+    @FunctionalInterface
+    interface Reader<T> {
+
+        T read(String name, boolean cached) throws ApiException;
+    }
+}
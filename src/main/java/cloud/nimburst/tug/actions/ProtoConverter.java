@@ -0,0 +1,136 @@
+package cloud.nimburst.tug.actions;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import io.kubernetes.client.JSON;
+
+import java.lang.reflect.Type;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts the protobuf messages of the Kubernetes API into the JSON models used everywhere else.
+ * <p>
+ * The protobuf fields carry the JSON names of the API, so a message maps onto its model field by field. Only the few
+ * types the API encodes differently in JSON need special handling: times, quantities, int-or-strings, raw extensions
+ * and bytes.
+ */
+final class ProtoConverter {
+
+    private static final Gson GSON = new JSON().getGson();
+    private static final String TIME = "k8s.io.apimachinery.pkg.apis.meta.v1.Time";
+    private static final String MICRO_TIME = "k8s.io.apimachinery.pkg.apis.meta.v1.MicroTime";
+    private static final String QUANTITY = "k8s.io.apimachinery.pkg.api.resource.Quantity";
+    private static final String INT_OR_STRING = "k8s.io.apimachinery.pkg.util.intstr.IntOrString";
+    private static final String RAW_EXTENSION = "k8s.io.apimachinery.pkg.runtime.RawExtension";
+
+    private ProtoConverter() {
+    }
+
+    /**
+     * Converts a message into its model.
+     *
+     * @param <T>     the model type
+     * @param message the message
+     * @param type    the model type
+     * @return the model
+     */
+    static <T> T convert(Message message, Type type) {
+
+        return GSON.fromJson(toJson(message), type);
+    }
+
+    /**
+     * Converts a message into the JSON the API would have sent instead.
+     *
+     * @param message the message
+     * @return the JSON
+     */
+    static JsonElement toJson(Message message) {
+
+        switch (message.getDescriptorForType().getFullName()) {
+            case TIME:
+                return time(message, ChronoUnit.SECONDS);
+            case MICRO_TIME:
+                return time(message, ChronoUnit.MICROS);
+            case QUANTITY:
+                return new JsonPrimitive((String) field(message, "string"));
+            case INT_OR_STRING:
+                // type 1 is a string, 0 an int
+                return (Long) field(message, "type") == 1
+                        ? new JsonPrimitive((String) field(message, "strVal"))
+                        : new JsonPrimitive((Integer) field(message, "intVal"));
+            case RAW_EXTENSION:
+                ByteString raw = (ByteString) field(message, "raw");
+                return new JsonParser().parse(raw.toStringUtf8());
+            default:
+                JsonObject object = new JsonObject();
+                for (Map.Entry<FieldDescriptor, Object> field : message.getAllFields().entrySet()) {
+                    object.add(field.getKey().getJsonName(), value(field.getKey(), field.getValue()));
+                }
+                return object;
+        }
+    }
+
+    private static Object field(Message message, String name) {
+
+        FieldDescriptor field = message.getDescriptorForType().findFieldByName(name);
+        return message.hasField(field) ? message.getField(field) : field.getDefaultValue();
+    }
+
+    private static JsonElement time(Message message, ChronoUnit precision) {
+
+        Instant instant = Instant.ofEpochSecond((Long) field(message, "seconds"), (Integer) field(message, "nanos"));
+        return new JsonPrimitive(DateTimeFormatter.ISO_INSTANT.format(instant.truncatedTo(precision)));
+    }
+
+    private static JsonElement value(FieldDescriptor field, Object value) {
+
+        if (field.isMapField()) {
+            JsonObject map = new JsonObject();
+            for (Object entry : (List<?>) value) {
+                Message pair = (Message) entry;
+                FieldDescriptor valueField = pair.getDescriptorForType().findFieldByName("value");
+                map.add(String.valueOf(field(pair, "key")), single(valueField, pair.getField(valueField)));
+            }
+            return map;
+        }
+        if (field.isRepeated()) {
+            JsonArray array = new JsonArray();
+            for (Object element : (List<?>) value) {
+                array.add(single(field, element));
+            }
+            return array;
+        }
+        return single(field, value);
+    }
+
+    private static JsonElement single(FieldDescriptor field, Object value) {
+
+        switch (field.getJavaType()) {
+            case MESSAGE:
+                return toJson((Message) value);
+            case BYTE_STRING:
+                return new JsonPrimitive(Base64.getEncoder().encodeToString(((ByteString) value).toByteArray()));
+            case BOOLEAN:
+                return new JsonPrimitive((Boolean) value);
+            case STRING:
+                return new JsonPrimitive((String) value);
+            case ENUM:
+                return new JsonPrimitive(value.toString());
+            default:
+                return new JsonPrimitive((Number) value);
+        }
+    }
+}
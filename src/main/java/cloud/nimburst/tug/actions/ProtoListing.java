@@ -0,0 +1,108 @@
+package cloud.nimburst.tug.actions;
+
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import io.kubernetes.client.ApiClient;
+import io.kubernetes.client.ApiException;
+import io.kubernetes.client.ProtoClient;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Type;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Lists resources of one kind in one namespace with the protobuf encoding of the API, which is smaller on the wire than
+ * JSON. Once the server has answered with anything but protobuf, the listing is marked unavailable so that callers go
+ * back to JSON for good.
+ *
+ * @param <T> the model class of the resources
+ */
+class ProtoListing<T> {
+
+    private final Supplier<Message.Builder> builder;
+    private final String path;
+    private final Type model;
+    private final AtomicBoolean available = new AtomicBoolean(true);
+
+    /**
+     * Instantiates a new ProtoListing.
+     *
+     * @param builder creates a builder for the protobuf list message of the kind
+     * @param path    the API path listing the kind in the namespace
+     * @param model   the model class of the resources
+     */
+    ProtoListing(Supplier<Message.Builder> builder, String path, Type model) {
+
+        this.builder = builder;
+        this.path = path;
+        this.model = model;
+    }
+
+    /**
+     * Whether the server has not yet failed to answer in protobuf.
+     *
+     * @return true if the listing can be used
+     */
+    boolean isAvailable() {
+        return available.get();
+    }
+
+    /**
+     * Marks the listing unavailable.
+     *
+     * @return true if it was available until now
+     */
+    boolean markUnavailable() {
+        return available.getAndSet(false);
+    }
+
+    /**
+     * Lists the resources.
+     *
+     * @param client          the client to list with
+     * @param fieldSelector   the field selector restricting the list, may be null
+     * @param labelSelector   the label selector restricting the list, may be null
+     * @param resourceVersion the resource version the list must be at least as new as, "0" to serve it from the watch
+     *                        cache or null for a quorum read
+     * @return the matching resources
+     * @throws ApiException if the server refuses the list
+     * @throws IOException  if the server did not answer in protobuf
+     */
+    Listing<T> list(ApiClient client, String fieldSelector, String labelSelector, String resourceVersion) throws ApiException, IOException {
+
+        ProtoClient.ObjectOrStatus<Message> result = new ProtoClient(client).list(builder.get(),
+                path + query(fieldSelector, labelSelector, resourceVersion));
+        if (result.status != null) {
+            throw new ApiException(result.status.getCode(), result.status.getMessage());
+        }
+        Message list = result.object;
+        FieldDescriptor itemsField = list.getDescriptorForType().findFieldByName("items");
+        List<T> items = new ArrayList<>();
+        for (Object item : (List<?>) list.getField(itemsField)) {
+            items.add(ProtoConverter.convert((Message) item, model));
+        }
+        Message metadata = (Message) list.getField(list.getDescriptorForType().findFieldByName("metadata"));
+        return new Listing<>(items, (String) metadata.getField(metadata.getDescriptorForType().findFieldByName("resourceVersion")));
+    }
+
+    private static String query(String fieldSelector, String labelSelector, String resourceVersion) throws UnsupportedEncodingException {
+
+        // the same parameters the JSON lists are made with
+        StringBuilder query = new StringBuilder("?includeUninitialized=true");
+        if (fieldSelector != null) {
+            query.append("&fieldSelector=").append(URLEncoder.encode(fieldSelector, "UTF-8"));
+        }
+        if (labelSelector != null) {
+            query.append("&labelSelector=").append(URLEncoder.encode(labelSelector, "UTF-8"));
+        }
+        if (resourceVersion != null) {
+            query.append("&resourceVersion=").append(URLEncoder.encode(resourceVersion, "UTF-8"));
+        }
+        return query.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package cloud.nimburst.tug.actions;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.kubernetes.client.JSON;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the JSON patch bringing a live resource in line with its configuration.
+ * <p>
+ * The live resource carries server populated fields the configuration never mentions, such as defaults and status, so
+ * only fields present in the configuration are compared and none are ever removed. Objects are compared field by
+ * field. Lists are compared element by element in the same way and replaced whole if any element differs.
+ */
+final class ResourcePatch {
+
+    private static final Gson GSON = new JSON().getGson();
+    private static final Set<String> IGNORED = new HashSet<>(Arrays.asList("/apiVersion", "/kind", "/status"));
+
+    private ResourcePatch() {
+    }
+
+    /**
+     * Computes the JSON patch operations bringing the live resource in line with the configured one.
+     *
+     * @param desired the resource as configured
+     * @param live    the resource as read from the cluster
+     * @return the patch operations, empty if the live resource already matches
+     */
+    static JsonArray diff(Object desired, Object live) {
+
+        JsonArray patch = new JsonArray();
+        diff("", GSON.toJsonTree(desired), GSON.toJsonTree(live), patch);
+        return patch;
+    }
+
+    private static void diff(String path, JsonElement desired, JsonElement live, JsonArray patch) {
+
+        if (desired.isJsonObject() && live != null && live.isJsonObject()) {
+            JsonObject liveObject = live.getAsJsonObject();
+            for (Map.Entry<String, JsonElement> field : desired.getAsJsonObject().entrySet()) {
+                String fieldPath = path + "/" + field.getKey().replace("~", "~0").replace("/", "~1");
+                if (IGNORED.contains(fieldPath) || field.getValue().isJsonNull()) {
+                    continue;
+                }
+                JsonElement liveValue = liveObject.get(field.getKey());
+                if (liveValue == null || liveValue.isJsonNull()) {
+                    patch.add(operation("add", fieldPath, field.getValue()));
+                } else {
+                    diff(fieldPath, field.getValue(), liveValue, patch);
+                }
+            }
+        } else if (!contains(live, desired)) {
+            patch.add(operation("replace", path, desired));
+        }
+    }
+
+    /**
+     * Checks whether every field set in the desired element has the same value in the live one.
+     */
+    private static boolean contains(JsonElement live, JsonElement desired) {
+
+        if (desired == null || desired.isJsonNull()) {
+            return true;
+        }
+        if (live == null || live.isJsonNull()) {
+            return false;
+        }
+        if (desired.isJsonObject()) {
+            if (!live.isJsonObject()) {
+                return false;
+            }
+            JsonObject liveObject = live.getAsJsonObject();
+            return desired.getAsJsonObject().entrySet().stream()
+                    .allMatch(field -> contains(liveObject.get(field.getKey()), field.getValue()));
+        }
+        if (desired.isJsonArray()) {
+            if (!live.isJsonArray() || live.getAsJsonArray().size() != desired.getAsJsonArray().size()) {
+                return false;
+            }
+            for (int i = 0; i < desired.getAsJsonArray().size(); i++) {
+                if (!contains(live.getAsJsonArray().get(i), desired.getAsJsonArray().get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return desired.equals(live);
+    }
+
+    private static JsonObject operation(String op, String path, JsonElement value) {
+
+        JsonObject operation = new JsonObject();
+        operation.addProperty("op", op);
+        operation.addProperty("path", path);
+        operation.add("value", value);
+        return operation;
+    }
+}
@@ -0,0 +1,520 @@
+package cloud.nimburst.tug.actions;
+
+import cloud.nimburst.tug.ReadConsistency;
+import cloud.nimburst.tug.ResourceActionContext;
+import cloud.nimburst.tug.ResourceActionException;
+import cloud.nimburst.tug.StatusSource;
+import cloud.nimburst.tug.TugManifest;
+import com.squareup.okhttp.Call;
+import io.kubernetes.client.ApiClient;
+import io.kubernetes.client.ApiException;
+import io.kubernetes.client.models.V1ObjectMeta;
+import io.kubernetes.client.util.Watch;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a resource and waits for it to change state, without managing it.
+ * <p>
+ * API calls are made on the calling thread until there is something to wait for. Depending on the
+ * {@link StatusSource}, waits are either a {@link Poller} listing all waited on resources of the same kind and
+ * namespace once a second, a watch on the resource, or an {@link Informer} cache shared by all resources of the same
+ * kind and namespace. Watches and informers complete the wait as soon as the API server reports the change. Each
+ * watch takes a thread of the context's capped watch executor for as long as it is open, waits which find none free
+ * are polled.
+ *
+ * @param <T> the model class of the resource
+ */
+abstract class ResourceStatus<T> {
+
+    private static final long POLL_INTERVAL_MILLIS = 1000L;
+
+    private final String kind;
+    private final ResourceActionContext context;
+    private final int maxWaitSeconds;
+    private final boolean maxWaitConfigured;
+    private final JsonPathCondition readyWhen;
+
+    /**
+     * Instantiates a new ResourceStatus.
+     *
+     * @param kind       the kind of the resource
+     * @param deployment the deployment configuration from the manifest
+     * @param context    the shared context of the run
+     */
+    ResourceStatus(String kind, TugManifest.Deployment deployment, ResourceActionContext context) {
+
+        this.kind = kind;
+        this.context = context;
+        this.maxWaitSeconds = deployment.getMaxWaitSeconds();
+        this.maxWaitConfigured = deployment.hasMaxWaitSeconds();
+        String jsonPath = deployment.getReadiness().getJsonPath();
+        this.readyWhen = jsonPath == null ? null : JsonPathCondition.parse(jsonPath);
+    }
+
+    /**
+     * Gets the name of the resource in the cluster.
+     *
+     * @return the resource name
+     */
+    protected abstract String getName();
+
+    /**
+     * Gets the namespace of the resource.
+     *
+     * @return the namespace, or null if the resource is not namespaced
+     */
+    public String getNamespace() {
+        return null;
+    }
+
+    /**
+     * Gets the metadata of a resource returned by the API server.
+     *
+     * @param resource the resource
+     * @return the metadata
+     */
+    protected abstract V1ObjectMeta getMetadata(T resource);
+
+    /**
+     * Lists resources of this kind in the resource's namespace.
+     *
+     * @param fieldSelector   the field selector restricting the list
+     * @param labelSelector   the label selector restricting the list
+     * @param resourceVersion the resource version the list must be at least as new as, "0" to serve it from the watch
+     *                        cache or null for a quorum read
+     * @return the matching resources
+     * @throws ApiException if the list call fails
+     */
+    protected abstract Listing<T> list(String fieldSelector, String labelSelector, String resourceVersion) throws ApiException;
+
+    /**
+     * Gets the API path listing resources of this kind in the resource's namespace.
+     *
+     * @return the path, or null if resources of this kind can only be listed whole through the generated API
+     */
+    protected String listPath() {
+
+        return null;
+    }
+
+    /**
+     * Describes how to list resources of this kind in the resource's namespace with protobuf encoding.
+     *
+     * @return the protobuf listing or null if the kind can only be listed as JSON
+     */
+    protected ProtoListing<T> protoListing() {
+
+        return null;
+    }
+
+    /**
+     * Builds a watch call for resources of this kind in the resource's namespace.
+     *
+     * @param client          the client to build the call with
+     * @param fieldSelector   the field selector restricting the watch
+     * @param resourceVersion the resource version to watch from
+     * @param timeoutSeconds  the time after which the server ends the watch
+     * @return the call
+     * @throws ApiException if the call cannot be built
+     */
+    protected abstract Call watchCall(ApiClient client, String fieldSelector, String resourceVersion, int timeoutSeconds) throws ApiException;
+
+    /**
+     * Gets the type of the watch events for this kind.
+     *
+     * @return the watch event type
+     */
+    protected abstract Type watchType();
+
+    /**
+     * Checks whether an existing resource is ready. Kinds without a readiness state are ready as soon as they exist.
+     *
+     * @param resource the resource as returned by the API server
+     * @return true if the resource is ready
+     * @throws ResourceActionException if the resource can never become ready
+     */
+    protected boolean isReady(T resource) throws ResourceActionException {
+
+        return true;
+    }
+
+    /**
+     * Checks whether an existing resource is ready, by the readiness condition of the manifest if it has one and
+     * otherwise by the readiness check of the kind.
+     */
+    protected boolean ready(T resource) throws ResourceActionException {
+
+        return readyWhen == null ? isReady(resource) : readyWhen.test(resource);
+    }
+
+
+    /**
+     * Lists resources of this kind in the resource's namespace, with protobuf encoding if it is enabled and supported.
+     * Lists which may be cached are served from the watch cache of the API server if the read consistency allows it.
+     */
+    protected Listing<T> listResources(String fieldSelector, String labelSelector, boolean cached) throws ApiException {
+
+        String resourceVersion = resourceVersion(cached);
+        if (context.getOptions().isProtobuf()) {
+            String namespace = getNamespace() == null ? "" : getNamespace();
+            ProtoListing<T> proto = context.getShared("protobuf/" + kind + "/" + namespace, this::protoListing);
+            if (proto != null && proto.isAvailable()) {
+                try {
+                    return counted(proto.list(getApiClient(), fieldSelector, labelSelector, resourceVersion));
+                } catch (IOException | RuntimeException e) {
+                    if (proto.markUnavailable()) {
+                        System.out.println(String.format("unable to list %s as protobuf, using JSON: %s", describe(), e.getMessage()));
+                    }
+                }
+            }
+        }
+        return counted(list(fieldSelector, labelSelector, resourceVersion));
+    }
+
+    private String resourceVersion(boolean cached) {
+
+        // any version is new enough, so the API server answers from its watch cache instead of a quorum read of etcd
+        return cached && context.getOptions().getReadConsistency() == ReadConsistency.CACHED ? "0" : null;
+    }
+
+    private Listing<T> counted(Listing<T> listing) {
+
+        if (listPath() != null) {
+            context.getPayloadStats().recordItems(listPath(), false, listing.getItems().size());
+        }
+        return listing;
+    }
+
+    /**
+     * Lists the metadata of resources of this kind in the resource's namespace, leaving out their spec and status if
+     * the kind has a list path.
+     */
+    protected Map<String, V1ObjectMeta> listMetadata(String fieldSelector, String labelSelector, boolean cached) throws ApiException {
+
+        if (listPath() == null) {
+            Map<String, V1ObjectMeta> items = new HashMap<>();
+            listResources(fieldSelector, labelSelector, cached).getItems()
+                    .forEach(resource -> items.put(getMetadata(resource).getName(), getMetadata(resource)));
+            return items;
+        }
+        return MetadataListing.list(getApiClient(), listPath(), fieldSelector, labelSelector, resourceVersion(cached),
+                context.getPayloadStats());
+    }
+
+    protected String nameSelector() {
+
+        return "metadata.name=" + getName();
+    }
+
+    /**
+     * Reads the resource from the API server.
+     *
+     * @return the resource or null if it does not exist
+     * @throws ResourceActionException if the resource could not be looked up
+     */
+    protected T read() throws ResourceActionException {
+
+        if (context.getOptions().getStatusSource() == StatusSource.INFORMER) {
+            Informer<T> informer = informer();
+            try {
+                informer.synced().join();
+                return informer.get(getName());
+            } catch (CompletionException e) {
+                //the cache could not be filled, read the resource directly
+            }
+        }
+        Listing<T> result;
+        try {
+            result = listResources(nameSelector(), null, false);
+        } catch (ApiException e) {
+            throw new ResourceActionException(String.format("Unable to get %s info: %s", kind, e.getResponseBody()), e);
+        }
+        return result.getItems().isEmpty() ? null : result.getItems().get(0);
+    }
+
+    protected Informer<T> informer() {
+
+        String namespace = getNamespace() == null ? "" : getNamespace();
+        return context.getShared("informer/" + kind + "/" + namespace, () -> new Informer<>(
+                namespace.isEmpty() ? kind : kind + " in " + namespace,
+                () -> listResources(null, null, false),
+                (client, resourceVersion, timeoutSeconds) -> watchCall(client, null, resourceVersion, timeoutSeconds),
+                watchType(),
+                this::getMetadata,
+                context).start());
+    }
+
+    private Poller<T> poller() {
+
+        String namespace = getNamespace() == null ? "" : getNamespace();
+        return context.getShared("poller/" + kind + "/" + namespace, () -> new Poller<>(
+                namespace.isEmpty() ? kind : kind + " in " + namespace,
+                (labelSelector, cached) -> listResources(null, labelSelector, cached),
+                (name, cached) -> {
+                    Listing<T> listing = listResources("metadata.name=" + name, null, cached);
+                    return listing.getItems().isEmpty() ? null : listing.getItems().get(0);
+                },
+                (fieldSelector, labelSelector, cached) -> listMetadata(fieldSelector, labelSelector, cached).keySet(),
+                context.getOptions().getPollLabelSelector(),
+                this::getMetadata,
+                context.getScheduler(),
+                POLL_INTERVAL_MILLIS));
+    }
+
+    /**
+     * Waits for the resource to become ready.
+     *
+     * @return a future completed once the resource is ready
+     */
+    protected CompletableFuture<Void> waitUntilReady() {
+
+        return waitUntilReady(deadline());
+    }
+
+    /**
+     * Waits for the resource to become ready by a deadline shared with earlier waits.
+     *
+     * @param deadline the time after which the wait fails
+     * @return a future completed once the resource is ready
+     */
+    protected CompletableFuture<Void> waitUntilReady(Instant deadline) {
+
+        System.out.println(String.format("waiting for %s '%s' to be ready", kind, getName()));
+        return waitFor(resource -> resource != null && ready(resource), "was not ready", true, deadline);
+    }
+
+    /**
+     * Gets the deadline of a wait starting now.
+     *
+     * @return the time the maximum wait from now ends
+     */
+    protected Instant deadline() {
+
+        return Instant.now().plus(getMaxWaitSeconds(), ChronoUnit.SECONDS);
+    }
+
+    /**
+     * Waits for the resource to satisfy a condition, reading it from the watch cache if cached is set and the read
+     * consistency allows it.
+     */
+    protected CompletableFuture<Void> waitFor(Condition<T> condition, String failure, boolean cached) {
+
+        return waitFor(condition, failure, cached, deadline());
+    }
+
+    private CompletableFuture<Void> waitFor(Condition<T> condition, String failure, boolean cached, Instant maxTime) {
+
+        CompletableFuture<Void> result;
+        switch (context.getOptions().getStatusSource()) {
+            case INFORMER:
+                result = awaitInformer(condition, cached);
+                break;
+            case WATCH:
+                result = new CompletableFuture<>();
+                CompletableFuture<Void> watched = result;
+                try {
+                    context.getWatchExecutor().execute(() -> watch(watched, condition, maxTime, failure, cached));
+                } catch (RejectedExecutionException e) {
+                    // every watch thread is taken, wait along with the other polled resources of the kind instead
+                    pollInto(result, condition, cached);
+                }
+                break;
+            default:
+                result = poller().await(getName(), condition, cached);
+                break;
+        }
+        return withTimeout(result, failure, maxTime);
+    }
+
+    /**
+     * Waits for the resource to exist or be gone. Polls only list the metadata of resources for such waits.
+     */
+    protected CompletableFuture<Void> waitForExistence(boolean present, String failure, boolean cached) {
+
+        if (context.getOptions().getStatusSource() != StatusSource.POLL) {
+            return waitFor(resource -> (resource != null) == present, failure, cached);
+        }
+        return withTimeout(poller().awaitExistence(getName(), present, cached), failure, deadline());
+    }
+
+    private CompletableFuture<Void> withTimeout(CompletableFuture<Void> result, String failure, Instant deadline) {
+
+        long remaining = Math.max(0, Duration.between(Instant.now(), deadline).toMillis());
+        ScheduledFuture<?> timer = context.getScheduler().schedule(
+                () -> result.completeExceptionally(timeout(failure)), remaining, TimeUnit.MILLISECONDS);
+        result.whenComplete((r, e) -> timer.cancel(false));
+        return result;
+    }
+
+    private CompletableFuture<Void> awaitInformer(Condition<T> condition, boolean cached) {
+
+        Informer<T> informer = informer();
+        CompletableFuture<Void> result = informer.await(getName(), condition);
+        informer.synced().whenComplete((synced, e) -> {
+            if (e != null) {
+                //the cache could not be filled, poll instead
+                pollInto(result, condition, cached);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Completes a wait from the shared poller, which stops polling for it once the wait is completed otherwise.
+     */
+    private void pollInto(CompletableFuture<Void> result, Condition<T> condition, boolean cached) {
+
+        CompletableFuture<Void> polled = poller().await(getName(), condition, cached);
+        polled.whenComplete((r, e) -> {
+            if (e == null) {
+                result.complete(null);
+            } else {
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((r, e) -> polled.cancel(false));
+    }
+
+    private ResourceActionException timeout(String failure) {
+
+        return new ResourceActionException(String.format("%s '%s' %s in %d seconds", kind, getName(), failure, getMaxWaitSeconds()));
+    }
+
+    /**
+     * Lists the resource to get its current state and a resource version, then watches from that version until the
+     * condition holds. The watch is restarted from the last seen version whenever the server ends it, and relisted if
+     * the version has expired. If the watch itself fails the rest of the wait falls back to polling.
+     */
+    private void watch(CompletableFuture<Void> result, Condition<T> condition, Instant maxTime, String failure, boolean cached) {
+
+        String resourceVersion = null;
+        try {
+            while (!result.isDone()) {
+                if (resourceVersion == null) {
+                    Listing<T> listing = listResources(nameSelector(), null, cached);
+                    if (condition.test(listing.getItems().isEmpty() ? null : listing.getItems().get(0))) {
+                        result.complete(null);
+                        return;
+                    }
+                    resourceVersion = listing.getResourceVersion();
+                }
+                long remaining = Duration.between(Instant.now(), maxTime).getSeconds();
+                if (remaining <= 0) {
+                    result.completeExceptionally(timeout(failure));
+                    return;
+                }
+                Call call = watchCall(context.getWatchClient(), nameSelector(), resourceVersion, (int) remaining);
+                Watch<T> watch = Watch.createWatch(context.getWatchClient(), call, watchType());
+                try {
+                    for (Watch.Response<T> event : watch) {
+                        if ("ERROR".equals(event.type)) {
+                            // most likely the resource version has expired, start again from a fresh list
+                            resourceVersion = null;
+                            break;
+                        }
+                        resourceVersion = getMetadata(event.object).getResourceVersion();
+                        if (condition.test("DELETED".equals(event.type) ? null : event.object)) {
+                            result.complete(null);
+                            return;
+                        }
+                    }
+                } finally {
+                    watch.close();
+                }
+            }
+        } catch (ResourceActionException e) {
+            result.completeExceptionally(e);
+        } catch (ApiException | IOException | RuntimeException e) {
+            System.out.println(String.format("watch on %s '%s' failed, polling instead: %s", kind, getName(), e.getMessage()));
+            pollInto(result, condition, cached);
+        }
+    }
+
+    protected static <R> CompletableFuture<R> failed(Throwable e) {
+
+        CompletableFuture<R> result = new CompletableFuture<>();
+        result.completeExceptionally(e);
+        return result;
+    }
+
+    /**
+     * Gets the kind of the resource.
+     *
+     * @return the kind
+     */
+    public String getKind() {
+        return kind;
+    }
+
+    /**
+     * Describes the kind and namespace of the resource, for messages.
+     *
+     * @return the description
+     */
+    protected String describe() {
+
+        return kind + (getNamespace() == null ? "" : " in " + getNamespace());
+    }
+
+    /**
+     * Gets the shared context of the run.
+     *
+     * @return the context
+     */
+    protected ResourceActionContext getContext() {
+        return context;
+    }
+
+    /**
+     * Gets the client shared by all actions of the run.
+     *
+     * @return the client
+     */
+    protected ApiClient getApiClient() {
+
+        try {
+            return context.getApiClient();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to configure k8s client", e);
+        }
+    }
+
+    /**
+     * Gets the maximum number of seconds to wait for the resource to change state.
+     *
+     * @return the maximum wait
+     */
+    protected int getMaxWaitSeconds() {
+        return maxWaitSeconds;
+    }
+
+    /**
+     * Whether the manifest sets the maximum wait for the resource, rather than leaving it to the default.
+     *
+     * @return true if the maximum wait is set
+     */
+    protected boolean isMaxWaitConfigured() {
+        return maxWaitConfigured;
+    }
+
+    /**
+     * A condition on the state of the resource, which is null when the resource does not exist.
+     */
+    @FunctionalInterface
+    interface Condition<T> {
+
+        boolean test(T resource) throws ResourceActionException;
+    }
+}
@@ -0,0 +1,119 @@
+package cloud.nimburst.tug.actions;
+
+import cloud.nimburst.tug.ResourceActionContext;
+import cloud.nimburst.tug.ResourceActionException;
+import cloud.nimburst.tug.TugManifest;
+import com.google.gson.reflect.TypeToken;
+import com.squareup.okhttp.Call;
+import io.kubernetes.client.ApiClient;
+import io.kubernetes.client.ApiException;
+import io.kubernetes.client.apis.CoreV1Api;
+import io.kubernetes.client.models.V1Endpoints;
+import io.kubernetes.client.models.V1EndpointsList;
+import io.kubernetes.client.models.V1ObjectMeta;
+import io.kubernetes.client.proto.V1;
+import io.kubernetes.client.util.Watch;
+
+import java.lang.reflect.Type;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Waits for the Endpoints of a Service to have a ready address, which is when the Service can route traffic. It only
+ * waits, the Endpoints are managed by the cluster.
+ */
+class ServiceEndpoints extends ResourceStatus<V1Endpoints> {
+
+    private static final Type WATCH_TYPE = new TypeToken<Watch.Response<V1Endpoints>>() {}.getType();
+
+    private final String name;
+    private final String namespace;
+    private final CoreV1Api api;
+
+    /**
+     * Instantiates a new ServiceEndpoints.
+     *
+     * @param name       the name of the Service, which its Endpoints share
+     * @param namespace  the namespace of the Service
+     * @param deployment the deployment configuration of the Service from the manifest
+     * @param context    the shared context of the run
+     */
+    ServiceEndpoints(String name, String namespace, TugManifest.Deployment deployment, ResourceActionContext context) {
+        super("Endpoints", deployment, context);
+        this.name = name;
+        this.namespace = namespace;
+        api = new CoreV1Api(getApiClient());
+    }
+
+    /**
+     * Waits for the Endpoints to have a ready address, checking them right away first.
+     *
+     * @param deadline the deadline of the Service being made ready, which the wait shares
+     * @return a future completed once the Service can route traffic
+     */
+    CompletableFuture<Void> awaitReady(Instant deadline) {
+
+        try {
+            V1Endpoints endpoints = read();
+            if (endpoints != null && isReady(endpoints)) {
+                return CompletableFuture.completedFuture(null);
+            }
+        } catch (ResourceActionException e) {
+            return failed(e);
+        }
+        return waitUntilReady(deadline);
+    }
+
+    @Override
+    protected String getName() {
+        return name;
+    }
+
+    @Override
+    public String getNamespace() {
+        return namespace;
+    }
+
+    @Override
+    protected V1ObjectMeta getMetadata(V1Endpoints resource) {
+        return resource.getMetadata();
+    }
+
+    @Override
+    protected Listing<V1Endpoints> list(String fieldSelector, String labelSelector, String resourceVersion) throws ApiException {
+
+        V1EndpointsList result = api.listNamespacedEndpoints(namespace, null, null, fieldSelector, true, labelSelector, null, resourceVersion, null, null);
+        return new Listing<>(result.getItems(), result.getMetadata().getResourceVersion());
+    }
+
+    @Override
+    protected String listPath() {
+
+        return "/api/v1/namespaces/" + namespace + "/endpoints";
+    }
+
+    @Override
+    protected ProtoListing<V1Endpoints> protoListing() {
+
+        return new ProtoListing<>(V1.EndpointsList::newBuilder, listPath(), V1Endpoints.class);
+    }
+
+    @Override
+    protected Call watchCall(ApiClient client, String fieldSelector, String resourceVersion, int timeoutSeconds) throws ApiException {
+
+        return new CoreV1Api(client).listNamespacedEndpointsCall(namespace, null, null, fieldSelector, true, null, null, resourceVersion, timeoutSeconds, true, null, null);
+    }
+
+    @Override
+    protected Type watchType() {
+        return WATCH_TYPE;
+    }
+
+    @Override
+    protected boolean isReady(V1Endpoints endpoints) {
+
+        // addresses only lists endpoints passing their readiness probes, the others are in notReadyAddresses
+        return endpoints.getSubsets() != null && endpoints.getSubsets().stream()
+                .anyMatch(subset -> subset.getAddresses() != null && !subset.getAddresses().isEmpty());
+    }
+}
@@ -1,131 +1,158 @@
 package cloud.nimburst.tug.actions;
 
 import cloud.nimburst.tug.ResourceAction;
+import cloud.nimburst.tug.ResourceActionContext;
 import cloud.nimburst.tug.ResourceActionException;
 import cloud.nimburst.tug.TugManifest;
 import cloud.nimburst.tug.YamlParser;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.gson.reflect.TypeToken;
+import com.squareup.okhttp.Call;
+import io.kubernetes.client.ApiClient;
 import io.kubernetes.client.ApiException;
 import io.kubernetes.client.apis.CoreV1Api;
+import io.kubernetes.client.models.V1ObjectMeta;
 import io.kubernetes.client.models.V1Service;
 import io.kubernetes.client.models.V1ServiceList;
+import io.kubernetes.client.models.V1ServiceSpec;
+import io.kubernetes.client.proto.V1;
+import io.kubernetes.client.util.Watch;
 
+import java.lang.reflect.Type;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * {@link ResourceAction} for managing a Service resource
  */
-public class ServiceResourceAction implements ResourceAction {
+public class ServiceResourceAction extends AbstractResourceAction<V1Service> {
+
+    private static final Type WATCH_TYPE = new TypeToken<Watch.Response<V1Service>>() {}.getType();
 
     private final String namespace;
     private final V1Service serviceFile;
-    private final CoreV1Api api = new CoreV1Api();
-    private final int maxWaitSeconds;
+    private final CoreV1Api api;
+    private final ServiceEndpoints endpoints;
 
     /**
      * Instantiates a new ServiceResourceAction.
      *
      * @param resource   the content of the yaml resource configuration
      * @param deployment the deployment configuration from the manifest
+     * @param context    the shared context of the run
      */
-    public ServiceResourceAction(JsonNode resource, TugManifest.Deployment deployment) {
+    public ServiceResourceAction(JsonNode resource, TugManifest.Deployment deployment, ResourceActionContext context) {
+        super("Service", deployment, context);
+        api = new CoreV1Api(getApiClient());
         serviceFile = YamlParser.transformYaml(resource, V1Service.class, false);
         String namespace = serviceFile.getMetadata().getNamespace();
         this.namespace = namespace == null ? "default" : namespace;
-        this.maxWaitSeconds = deployment.getMaxWaitSeconds();
+        // the cluster only keeps the Endpoints of Services with a selector, a readiness condition replaces the check
+        V1ServiceSpec spec = serviceFile.getSpec();
+        boolean selected = spec != null && !"ExternalName".equals(spec.getType())
+                && spec.getSelector() != null && !spec.getSelector().isEmpty();
+        endpoints = selected && deployment.getReadiness().isEndpoints() && deployment.getReadiness().getJsonPath() == null
+                ? new ServiceEndpoints(getName(), this.namespace, deployment, context)
+                : null;
     }
 
-    private boolean resourceExists() throws ResourceActionException {
-
-        String selector = "metadata.name=" + serviceFile.getMetadata().getName();
-        V1ServiceList result;
-        try {
-            result = api.listNamespacedService(namespace, null, null, selector, true, null, null, null, null, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to get Service info: " + e.getResponseBody());
-        }
-        return result.getItems().size() > 0;
+    @Override
+    protected String getName() {
+        return serviceFile.getMetadata().getName();
     }
 
     @Override
-    public void makeReady() throws ResourceActionException {
+    public String getNamespace() {
+        return namespace;
+    }
 
-        if (!resourceExists()) {
-            create();
-            waitUntilCreated();
-            //wait a second longer to ensure service is ready to route requests
-            pollWait();
-        }
+    @Override
+    protected V1ObjectMeta getMetadata(V1Service resource) {
+        return resource.getMetadata();
     }
 
-    private void create() throws ResourceActionException {
+    @Override
+    protected Listing<V1Service> list(String fieldSelector, String labelSelector, String resourceVersion) throws ApiException {
 
-        System.out.println(String.format("creating Service '%s'", serviceFile.getMetadata().getName()));
-        try {
-            api.createNamespacedService(namespace, serviceFile, null);
-        } catch (ApiException e) {
-            throw new ResourceActionException("Unable to create Service: " + e.getResponseBody(), e);
-        }
+        V1ServiceList result = api.listNamespacedService(namespace, null, null, fieldSelector, true, labelSelector, null, resourceVersion, null, null);
+        return new Listing<>(result.getItems(), result.getMetadata().getResourceVersion());
     }
 
-    private void waitUntilCreated() throws ResourceActionException {
+    @Override
+    protected String listPath() {
 
-        System.out.println(String.format("waiting for Service '%s' to be created", serviceFile.getMetadata().getName()));
-        Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+        return "/api/v1/namespaces/" + namespace + "/services";
+    }
 
-        pollWait();
+    /**
+     * Services cannot be deleted by collection.
+     */
+    @Override
+    protected boolean canDeleteCollection() {
 
-        while (!resourceExists()) {
-            if (Instant.now().isAfter(maxTime)) {
-                throw new ResourceActionException(String.format("Service '%s' was not created in %d seconds", serviceFile.getMetadata().getName(), maxWaitSeconds));
-            }
-            pollWait();
-        }
+        return false;
     }
 
+    @Override
+    protected ProtoListing<V1Service> protoListing() {
+
+        return new ProtoListing<>(V1.ServiceList::newBuilder, listPath(), V1Service.class);
+    }
 
     @Override
-    public void delete() throws ResourceActionException {
+    protected Call watchCall(ApiClient client, String fieldSelector, String resourceVersion, int timeoutSeconds) throws ApiException {
 
-        if (resourceExists()) {
-            executeDelete();
-            waitUntilDeleted();
-        }
+        return new CoreV1Api(client).listNamespacedServiceCall(namespace, null, null, fieldSelector, true, null, null, resourceVersion, timeoutSeconds, true, null, null);
     }
 
-    private void waitUntilDeleted() throws ResourceActionException {
+    @Override
+    protected Type watchType() {
+        return WATCH_TYPE;
+    }
 
-        System.out.println(String.format("waiting for Service '%s' to be deleted", serviceFile.getMetadata().getName()));
-        Instant maxTime = Instant.now().plus(maxWaitSeconds, ChronoUnit.SECONDS);
+    /**
+     * Creates the Service and, if the manifest asks for it and the Service selects pods, waits for its Endpoints to
+     * have a ready address, so that it can route traffic by the time it counts as ready. Both waits share the maximum
+     * wait of the Service.
+     */
+    @Override
+    public CompletableFuture<Boolean> makeReady(Runnable created) {
 
-        pollWait();
+        Instant deadline = deadline();
+        CompletableFuture<Boolean> ready = super.makeReady(created);
+        return endpoints == null ? ready : ready.thenCompose(current -> endpoints.awaitReady(deadline).thenApply(r -> current));
+    }
 
-        while (resourceExists()) {
-            if (Instant.now().isAfter(maxTime)) {
-                throw new ResourceActionException(String.format("Service '%s' was not deleted in %d seconds", serviceFile.getMetadata().getName(), maxWaitSeconds));
-            }
-            pollWait();
-        }
+    @Override
+    protected V1Service getDesired() {
+        return serviceFile;
     }
 
-    private void executeDelete() throws ResourceActionException {
+    @Override
+    protected V1Service patch(Object patch) throws ApiException {
+
+        return api.patchNamespacedService(serviceFile.getMetadata().getName(), namespace, patch, null);
+    }
 
-        System.out.println(String.format("deleting Service '%s'", serviceFile.getMetadata().getName()));
+    @Override
+    protected void create() throws ResourceActionException {
+
+        System.out.println(String.format("creating Service '%s'", serviceFile.getMetadata().getName()));
         try {
-            api.deleteNamespacedService(serviceFile.getMetadata().getName(), namespace, null);
+            api.createNamespacedService(namespace, serviceFile, null);
         } catch (ApiException e) {
-            throw new ResourceActionException("Unable to delete Service: " + e.getResponseBody(), e);
+            throw new ResourceActionException("Unable to create Service: " + e.getResponseBody(), e);
         }
     }
 
-    private void pollWait() {
+    @Override
+    protected void executeDelete() throws ResourceActionException {
 
+        System.out.println(String.format("deleting Service '%s'", serviceFile.getMetadata().getName()));
         try {
-            Thread.sleep(1000L);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Thread was interrupted while checking Service status", e);
+            api.deleteNamespacedService(serviceFile.getMetadata().getName(), namespace, null);
+        } catch (ApiException e) {
+            throw new ResourceActionException("Unable to delete Service: " + e.getResponseBody(), e);
         }
     }
 }
@@ -0,0 +1,51 @@
+package cloud.nimburst.tug.actions;
+
+import cloud.nimburst.tug.ResourceActionException;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A wait for the state of one resource to satisfy a condition, checked by a shared cache or poller whenever it has news
+ * of the resource.
+ *
+ * @param <T> the model class of the resource
+ */
+class Waiter<T> {
+
+    private final ResourceStatus.Condition<T> condition;
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+    /**
+     * Instantiates a new Waiter.
+     *
+     * @param condition the condition, given null while the resource does not exist
+     */
+    Waiter(ResourceStatus.Condition<T> condition) {
+        this.condition = condition;
+    }
+
+    /**
+     * Gets the future completed once the condition holds, or failed if checking it failed.
+     *
+     * @return the result
+     */
+    CompletableFuture<Void> getResult() {
+        return result;
+    }
+
+    /**
+     * Checks the condition against the state of the resource.
+     *
+     * @param resource the resource or null if it does not exist
+     */
+    void check(T resource) {
+
+        try {
+            if (condition.test(resource)) {
+                result.complete(null);
+            }
+        } catch (ResourceActionException | RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+}
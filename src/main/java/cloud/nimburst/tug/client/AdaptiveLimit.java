@@ -0,0 +1,175 @@
+package cloud.nimburst.tug.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A concurrency limit adjusted to the health of the API server, additively increased while requests are answered
+ * promptly and multiplicatively decreased when the server throttles (429), fails (5xx) or slows down.
+ * <p>
+ * The server is considered slow once the smoothed request latency exceeds twice the lowest latency seen so far, and at
+ * least {@link #MIN_SLOW_LATENCY_MILLIS}. The limit is decreased at most once per {@link #DECREASE_INTERVAL_MILLIS},
+ * as requests already in flight report the same congestion, and only increased while it is actually being used.
+ * Listeners are told whenever the limit grows, so that work held back by it can be tried again.
+ */
+public class AdaptiveLimit implements RequestObserver {
+
+    private static final double BACKOFF = 0.75;
+    private static final double SMOOTHING = 0.2;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final long MIN_SLOW_LATENCY_MILLIS = 100;
+    private static final long DECREASE_INTERVAL_MILLIS = 1000;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVER_ERROR = 500;
+
+    private final int max;
+    private final long start;
+    private final List<long[]> changes = new ArrayList<>();
+    private final List<Runnable> increaseListeners = new CopyOnWriteArrayList<>();
+    private double limit;
+    private int inFlight;
+    private double smoothedLatency = -1;
+    private long minLatency = Long.MAX_VALUE;
+    private long lastDecrease;
+
+    /**
+     * Instantiates a new AdaptiveLimit.
+     *
+     * @param initial the limit to start from
+     * @param max     the highest the limit may go
+     */
+    public AdaptiveLimit(int initial, int max) {
+
+        this(initial, max, System.nanoTime());
+    }
+
+    /**
+     * Instantiates a new AdaptiveLimit.
+     *
+     * @param initial the limit to start from
+     * @param max     the highest the limit may go
+     * @param now     the current time in nanoseconds
+     */
+    AdaptiveLimit(int initial, int max, long now) {
+
+        this.max = max;
+        this.limit = Math.max(1, Math.min(initial, max));
+        this.start = now;
+        this.lastDecrease = now - TimeUnit.MILLISECONDS.toNanos(DECREASE_INTERVAL_MILLIS);
+        changes.add(new long[]{0, getLimit()});
+    }
+
+    /**
+     * Gets the current limit.
+     *
+     * @return the limit, at least one
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Takes a slot if fewer than the limit are taken.
+     *
+     * @return true if a slot was taken
+     */
+    public synchronized boolean tryAcquire() {
+
+        if (inFlight >= getLimit()) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Returns a slot taken with {@link #tryAcquire()}.
+     */
+    public synchronized void release() {
+        inFlight--;
+    }
+
+    /**
+     * Adds a listener run whenever the limit grows, outside of any lock held by the limit.
+     *
+     * @param listener the listener
+     */
+    public void addIncreaseListener(Runnable listener) {
+        increaseListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addIncreaseListener(Runnable)}.
+     *
+     * @param listener the listener
+     */
+    public void removeIncreaseListener(Runnable listener) {
+        increaseListeners.remove(listener);
+    }
+
+    @Override
+    public void onResponse(long latencyNanos, int code) {
+
+        onResponse(latencyNanos, code, System.nanoTime());
+    }
+
+    /**
+     * Adjusts the limit to the outcome of a request.
+     *
+     * @param latencyNanos the time the server took to respond
+     * @param code         the HTTP status code, or -1 if the request failed without a response
+     * @param now          the current time in nanoseconds
+     */
+    void onResponse(long latencyNanos, int code, long now) {
+
+        if (adjust(latencyNanos, code, now)) {
+            increaseListeners.forEach(Runnable::run);
+        }
+    }
+
+    private synchronized boolean adjust(long latencyNanos, int code, long now) {
+
+        int before = getLimit();
+        if (code == TOO_MANY_REQUESTS || code >= SERVER_ERROR || code < 0) {
+            decrease(now);
+        } else {
+            minLatency = Math.min(minLatency, latencyNanos);
+            smoothedLatency = smoothedLatency < 0 ? latencyNanos : SMOOTHING * latencyNanos + (1 - SMOOTHING) * smoothedLatency;
+            if (smoothedLatency > LATENCY_TOLERANCE * minLatency
+                    && smoothedLatency > TimeUnit.MILLISECONDS.toNanos(MIN_SLOW_LATENCY_MILLIS)) {
+                decrease(now);
+            } else if (inFlight * 2 >= before) {
+                // one more slot for every limit's worth of good responses
+                limit = Math.min(max, limit + 1 / limit);
+            }
+        }
+        if (getLimit() != before) {
+            changes.add(new long[]{TimeUnit.NANOSECONDS.toMillis(now - start), getLimit()});
+        }
+        return getLimit() > before;
+    }
+
+    private void decrease(long now) {
+
+        if (now - lastDecrease < TimeUnit.MILLISECONDS.toNanos(DECREASE_INTERVAL_MILLIS)) {
+            return;
+        }
+        lastDecrease = now;
+        limit = Math.max(1, Math.floor(limit * BACKOFF));
+    }
+
+    /**
+     * Describes how the limit changed over the run.
+     *
+     * @return the limit at each change, with the time since the start
+     */
+    public synchronized String report() {
+
+        return changes.stream()
+                .map(change -> String.format("%.1fs: %d", change[0] / 1000.0, change[1]))
+                .collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,119 @@
+package cloud.nimburst.tug.client;
+
+import cloud.nimburst.tug.DaemonThreadFactory;
+import com.squareup.okhttp.Callback;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.Dispatcher;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import io.kubernetes.client.ApiClient;
+import io.kubernetes.client.ApiException;
+import io.kubernetes.client.Pair;
+import io.kubernetes.client.util.Config;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the API clients of a run on one connection pool and dispatcher sized to its concurrency.
+ * <p>
+ * Out of the box every client gets its own dispatcher, which runs at most five asynchronous requests per host, and
+ * all of them share a process wide pool keeping five idle connections. Here both are sized so that as many requests
+ * as resources acted on at once can be in flight without queueing or reconnecting. Connections negotiate HTTP/2 where
+ * the server and the TLS stack support it, so requests are multiplexed on a few connections, and otherwise fall back
+ * to HTTP/1.1 with keep-alive.
+ */
+public class ManagedClients implements AutoCloseable {
+
+    private static final int MIN_CONNECTIONS = 5;
+    private static final int MIN_REQUESTS = 64;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final String[] AUTH_NAMES = {"BearerToken"};
+
+    private final ExecutorService executor;
+    private final Dispatcher dispatcher;
+    private final ConnectionPool connectionPool;
+
+    /**
+     * Instantiates a new ManagedClients.
+     *
+     * @param concurrency the highest number of resources acted on at once
+     */
+    public ManagedClients(int concurrency) {
+
+        executor = Executors.newCachedThreadPool(new DaemonThreadFactory("tug-http"));
+        dispatcher = new Dispatcher(executor);
+        int requests = Math.max(MIN_REQUESTS, concurrency * 2);
+        dispatcher.setMaxRequests(requests);
+        dispatcher.setMaxRequestsPerHost(requests);
+        connectionPool = new ConnectionPool(Math.max(MIN_CONNECTIONS, concurrency), KEEP_ALIVE_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Builds a client for the configured cluster on the shared connection pool and dispatcher.
+     *
+     * @param interceptors the interceptors all requests of the client go through, outermost first
+     * @return the client
+     * @throws IOException if the client could not be configured
+     */
+    public ApiClient newClient(List<Interceptor> interceptors) throws IOException {
+
+        ApiClient client = Config.defaultClient();
+        OkHttpClient http = client.getHttpClient();
+        http.setDispatcher(dispatcher);
+        http.setConnectionPool(connectionPool);
+        http.setProtocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        http.interceptors().addAll(interceptors);
+        return client;
+    }
+
+    /**
+     * Opens a connection to the API server in the background, so the TCP and TLS handshakes are done by the time the
+     * first real request is made. Failures are ignored, the request which needs the connection will report them.
+     *
+     * @param client the client to open the connection with
+     */
+    public void prewarm(ApiClient client) {
+
+        try {
+            client.buildCall("/version", "GET", Collections.<Pair>emptyList(), Collections.<Pair>emptyList(), null,
+                    new HashMap<>(), new HashMap<>(), AUTH_NAMES, null)
+                    .enqueue(new DiscardingCallback());
+        } catch (ApiException e) {
+            //no connection to warm up
+        }
+    }
+
+    @Override
+    public void close() {
+
+        connectionPool.evictAll();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Drops the response of a request made only for its connection.
+     */
+    private static final class DiscardingCallback implements Callback {
+
+        @Override
+        public void onFailure(Request request, IOException e) {
+            //ignored
+        }
+
+        @Override
+        public void onResponse(Response response) throws IOException {
+
+            response.body().close();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package cloud.nimburst.tug.client;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+
+/**
+ * Reports the latency and status of each request to a {@link RequestObserver}. Watches are left out as they stay open
+ * until the server has something to say, so their duration says nothing about its load.
+ */
+public class ObservingInterceptor implements Interceptor {
+
+    private final RequestObserver observer;
+
+    /**
+     * Instantiates a new ObservingInterceptor.
+     *
+     * @param observer the observer to report to
+     */
+    public ObservingInterceptor(RequestObserver observer) {
+
+        this.observer = observer;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+
+        Request request = chain.request();
+        String watch = request.httpUrl().queryParameter("watch");
+        if ("true".equals(watch)) {
+            return chain.proceed(request);
+        }
+        long start = System.nanoTime();
+        try {
+            Response response = chain.proceed(request);
+            observer.onResponse(System.nanoTime() - start, response.code());
+            return response;
+        } catch (IOException e) {
+            observer.onResponse(System.nanoTime() - start, -1);
+            throw e;
+        }
+    }
+}
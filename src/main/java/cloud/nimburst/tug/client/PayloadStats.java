@@ -0,0 +1,173 @@
+package cloud.nimburst.tug.client;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Measures the bytes of list responses by collection, separately for lists of whole resources and lists of their
+ * metadata only, to estimate what metadata-only existence checks saved.
+ * <p>
+ * The interceptor counts the bytes of every read as the caller consumes the body, the listing code the items in each
+ * list. The saving on a
+ * collection is then its metadata-only items at the average size of a whole resource in that collection, minus what
+ * the metadata-only lists actually took. It can only be estimated for collections also listed whole during the run.
+ */
+public class PayloadStats implements Interceptor {
+
+    /**
+     * The Accept header value asking for the metadata of listed resources only. The server takes the first type it
+     * supports, so an old server answers with a full list.
+     */
+    public static final String METADATA_ACCEPT = "application/json;as=PartialObjectMetadataList;g=meta.k8s.io;v=v1,"
+            + "application/json;as=PartialObjectMetadataList;g=meta.k8s.io;v=v1beta1,application/json";
+
+    private final Map<String, Long> fullBytes = new HashMap<>();
+    private final Map<String, Long> fullItems = new HashMap<>();
+    private final Map<String, Long> metadataBytes = new HashMap<>();
+    private final Map<String, Long> metadataItems = new HashMap<>();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+        if (!"GET".equals(request.method()) || "true".equals(request.httpUrl().queryParameter("watch"))) {
+            return response;
+        }
+        Map<String, Long> bytes = METADATA_ACCEPT.equals(request.header("Accept")) ? metadataBytes : fullBytes;
+        String path = request.httpUrl().encodedPath();
+        return response.newBuilder()
+                .body(new CountingBody(response.body(), read -> recordBytes(bytes, path, read)))
+                .build();
+    }
+
+    private synchronized void recordBytes(Map<String, Long> bytes, String path, long read) {
+
+        bytes.merge(path, read, Long::sum);
+    }
+
+    /**
+     * Records the number of items returned by a list.
+     *
+     * @param path         the API path of the listed collection
+     * @param metadataOnly whether only the metadata of the items was listed
+     * @param items        the number of items
+     */
+    public synchronized void recordItems(String path, boolean metadataOnly, int items) {
+
+        (metadataOnly ? metadataItems : fullItems).merge(path, (long) items, Long::sum);
+    }
+
+    /**
+     * Whether any metadata-only list was made.
+     *
+     * @return true if there is something to report
+     */
+    public synchronized boolean hasMetadataLists() {
+
+        return !metadataItems.isEmpty();
+    }
+
+    /**
+     * Describes the bytes taken by metadata-only lists and the estimated saving over listing whole resources.
+     *
+     * @return the report
+     */
+    public synchronized String report() {
+
+        long saved = 0;
+        boolean estimated = false;
+        for (Map.Entry<String, Long> items : metadataItems.entrySet()) {
+            long wholeItems = fullItems.getOrDefault(items.getKey(), 0L);
+            if (wholeItems > 0) {
+                long perItem = bytes(fullBytes, items.getKey()) / wholeItems;
+                saved += items.getValue() * perItem - bytes(metadataBytes, items.getKey());
+                estimated = true;
+            }
+        }
+        String report = String.format("metadata-only existence checks read %,d bytes",
+                metadataBytes.values().stream().mapToLong(Long::longValue).sum());
+        return estimated
+                ? report + String.format(", about %,d bytes less than whole resources", saved)
+                : report;
+    }
+
+    /**
+     * A response body passing on the bytes read from it to a counter, without buffering them.
+     */
+    private static final class CountingBody extends ResponseBody {
+
+        private final ResponseBody body;
+        private final BufferedSource source;
+
+        private CountingBody(ResponseBody body, LongConsumer counter) throws IOException {
+
+            this.body = body;
+            this.source = Okio.buffer(new CountingSource(body.source(), counter));
+        }
+
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return body.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+
+    /**
+     * A source counting the bytes read through it.
+     */
+    private static final class CountingSource extends ForwardingSource {
+
+        private final LongConsumer counter;
+
+        private CountingSource(Source delegate, LongConsumer counter) {
+
+            super(delegate);
+            this.counter = counter;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+
+            long read = super.read(sink, byteCount);
+            if (read > 0) {
+                counter.accept(read);
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Sums the bytes read from a collection. The interceptor sees the full request path, which starts with the path of
+     * the API server URL if it has one, while items are recorded against the API path alone.
+     */
+    private static long bytes(Map<String, Long> bytes, String path) {
+
+        return bytes.entrySet().stream()
+                .filter(entry -> entry.getKey().endsWith(path))
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+    }
+}
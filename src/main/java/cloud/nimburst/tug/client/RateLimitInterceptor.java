@@ -0,0 +1,71 @@
+package cloud.nimburst.tug.client;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes every request to the API server take a token from a bucket first, with separate buckets for reads and
+ * mutations. A request throttled with 429 Too Many Requests pauses its bucket for the Retry-After time given by the
+ * server and is then tried again.
+ */
+public class RateLimitInterceptor implements Interceptor {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int MAX_RETRIES = 5;
+    private static final long DEFAULT_RETRY_AFTER_SECONDS = 1;
+
+    private final TokenBucket reads;
+    private final TokenBucket mutations;
+
+    /**
+     * Instantiates a new RateLimitInterceptor.
+     *
+     * @param reads     the bucket for GET and HEAD requests
+     * @param mutations the bucket for all other requests
+     */
+    public RateLimitInterceptor(TokenBucket reads, TokenBucket mutations) {
+
+        this.reads = reads;
+        this.mutations = mutations;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+
+        Request request = chain.request();
+        TokenBucket bucket = "GET".equals(request.method()) || "HEAD".equals(request.method()) ? reads : mutations;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                bucket.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting for rate limit");
+            }
+            Response response = chain.proceed(request);
+            if (response.code() != TOO_MANY_REQUESTS || attempt >= MAX_RETRIES) {
+                return response;
+            }
+            long retryAfter = retryAfterSeconds(response.header("Retry-After"));
+            response.body().close();
+            bucket.pause(TimeUnit.SECONDS.toNanos(retryAfter));
+        }
+    }
+
+    private static long retryAfterSeconds(String header) {
+
+        if (header == null) {
+            return DEFAULT_RETRY_AFTER_SECONDS;
+        }
+        try {
+            return Math.max(0, Long.parseLong(header.trim()));
+        } catch (NumberFormatException e) {
+            // an HTTP date, which the API server does not send
+            return DEFAULT_RETRY_AFTER_SECONDS;
+        }
+    }
+}
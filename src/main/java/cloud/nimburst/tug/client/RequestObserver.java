@@ -0,0 +1,15 @@
+package cloud.nimburst.tug.client;
+
+/**
+ * Receives the outcome of each request made to the API server.
+ */
+public interface RequestObserver {
+
+    /**
+     * Called when a request completes.
+     *
+     * @param latencyNanos the time the server took to respond
+     * @param code         the HTTP status code, or -1 if the request failed without a response
+     */
+    void onResponse(long latencyNanos, int code);
+}
@@ -0,0 +1,83 @@
+package cloud.nimburst.tug.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket refilled at a steady rate up to a burst size, each request taking one token.
+ * <p>
+ * Requests reserve their token up front and then wait out any shortfall, so concurrent callers are served in the order
+ * they arrive without spinning.
+ */
+public class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double perSecond;
+    private final int burst;
+    private double tokens;
+    private long refilled;
+
+    /**
+     * Instantiates a new TokenBucket, initially full.
+     *
+     * @param perSecond the rate tokens are added at
+     * @param burst     the maximum number of tokens
+     */
+    public TokenBucket(double perSecond, int burst) {
+
+        this.perSecond = perSecond;
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilled = System.nanoTime();
+    }
+
+    /**
+     * Takes a token, waiting for one to become available if needed.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+
+        long wait = reserve(System.nanoTime());
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Takes a token at the given time.
+     *
+     * @param now the current time in nanoseconds
+     * @return the nanoseconds to wait before the token may be used
+     */
+    synchronized long reserve(long now) {
+
+        if (now > refilled) {
+            tokens = Math.min(burst, tokens + (now - refilled) * perSecond / NANOS_PER_SECOND);
+            refilled = now;
+        }
+        tokens -= 1;
+        // while paused the refill time lies ahead and the shortfall only starts refilling from there
+        long wait = Math.max(0, refilled - now);
+        if (tokens < 0) {
+            wait += (long) Math.ceil(-tokens * NANOS_PER_SECOND / perSecond);
+        }
+        return wait;
+    }
+
+    /**
+     * Stops handing out tokens for a while, when the server asks to back off. The bucket is emptied so requests
+     * resume at the steady rate rather than in a burst.
+     *
+     * @param nanos how long to pause for
+     */
+    public synchronized void pause(long nanos) {
+
+        long now = System.nanoTime();
+        if (now > refilled) {
+            tokens = Math.min(burst, tokens + (now - refilled) * perSecond / NANOS_PER_SECOND);
+        }
+        tokens = Math.min(tokens, 0);
+        refilled = Math.max(refilled, now + nanos);
+    }
+}
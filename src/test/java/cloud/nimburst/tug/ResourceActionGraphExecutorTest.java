@@ -0,0 +1,736 @@
+package cloud.nimburst.tug;
+
+import cloud.nimburst.tug.TugManifest.Dependency;
+import cloud.nimburst.tug.TugManifest.Deployment;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ResourceActionGraphExecutorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private final List<ResourceActionContext> contexts = new CopyOnWriteArrayList<>();
+
+    @After
+    public void closeContexts() {
+
+        contexts.forEach(ResourceActionContext::close);
+    }
+
+    private ResourceActionContext context(int concurrency) {
+
+        TugOptions options = new TugOptions();
+        options.setConcurrency(concurrency);
+        ResourceActionContext context = new ResourceActionContext(options);
+        contexts.add(context);
+        return context;
+    }
+
+    private ResourceActionContext criticalPath(ResourceActionContext context) {
+
+        context.getOptions().setSchedulingOrder(SchedulingOrder.CRITICAL_PATH);
+        return context;
+    }
+
+    private TugManifest manifest() {
+
+        // c depends on b, b depends on a, d depends on a
+        TugManifest manifest = new TugManifest();
+        manifest.setDeployments(Arrays.asList(
+                deployment("a"),
+                deployment("b", "a"),
+                deployment("c", "b"),
+                deployment("d", "a")));
+        return manifest;
+    }
+
+    private Deployment deployment(String name, String... dependencies) {
+
+        Deployment deployment = new Deployment();
+        deployment.setName(name);
+        deployment.setLocation(name + ".yaml");
+        deployment.setDependencies(Arrays.stream(dependencies).map(Dependency::new).collect(Collectors.toSet()));
+        return deployment;
+    }
+
+    private ResourceAction recordingAction(Deployment deployment) {
+
+        return new ResourceAction() {
+            @Override
+            public CompletableFuture<Void> makeReady() {
+                events.add("create " + deployment.getName());
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public CompletableFuture<Void> delete() {
+                events.add("delete " + deployment.getName());
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+    }
+
+    private void assertBefore(String first, String second) {
+
+        assertTrue(events.contains(first));
+        assertTrue(events.contains(second));
+        assertTrue(first + " should happen before " + second, events.indexOf(first) < events.indexOf(second));
+    }
+
+    @Test
+    public void createsDependenciesFirst() {
+
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.CREATE), context(4), manifest(), Collections.emptyList(), this::recordingAction, new DurationHistory(null), new ApplyState(null, null, "cluster"))
+                .execute();
+
+        assertEquals(4, events.size());
+        assertBefore("create a", "create b");
+        assertBefore("create b", "create c");
+        assertBefore("create a", "create d");
+    }
+
+    @Test
+    public void deletesDependentsFirst() {
+
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.DELETE), context(4), manifest(), Collections.emptyList(), this::recordingAction, new DurationHistory(null), new ApplyState(null, null, "cluster"))
+                .execute();
+
+        assertEquals(4, events.size());
+        assertBefore("delete c", "delete b");
+        assertBefore("delete b", "delete a");
+        assertBefore("delete d", "delete a");
+    }
+
+    @Test
+    public void createsOnlySelectedResourcesAndDependencies() {
+
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.CREATE), context(4), manifest(), Collections.singletonList("b"), this::recordingAction, new DurationHistory(null), new ApplyState(null, null, "cluster"))
+                .execute();
+
+        assertEquals(Arrays.asList("create a", "create b"), events);
+    }
+
+    @Test
+    public void deletesOnlySelectedResourcesAndDependents() {
+
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.DELETE), context(4), manifest(), Collections.singletonList("b"), this::recordingAction, new DurationHistory(null), new ApplyState(null, null, "cluster"))
+                .execute();
+
+        assertEquals(Arrays.asList("delete c", "delete b"), events);
+    }
+
+    @Test
+    public void startsLongestChainFirst() {
+
+        // a single slot with b and d ready: b heads the chain b <- c, so it goes before d
+        TugManifest manifest = new TugManifest();
+        manifest.setDeployments(Arrays.asList(
+                deployment("b"),
+                deployment("c", "b"),
+                deployment("d")));
+        DurationHistory history = new DurationHistory(null);
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.CREATE), criticalPath(context(1)), manifest, Collections.emptyList(), this::recordingAction, history, new ApplyState(null, null, "cluster"))
+                .execute();
+
+        assertBefore("create b", "create d");
+        assertTrue(history.getMillis("b", ResourceActionDirection.CREATE) >= 0);
+    }
+
+    @Test
+    public void weighsChainsByRecordedDuration() {
+
+        // d has no dependents but took far longer than b and c together last time
+        TugManifest manifest = new TugManifest();
+        manifest.setDeployments(Arrays.asList(
+                deployment("b"),
+                deployment("c", "b"),
+                deployment("d")));
+        DurationHistory history = new DurationHistory(null);
+        history.record("b", ResourceActionDirection.CREATE, 10);
+        history.record("c", ResourceActionDirection.CREATE, 10);
+        history.record("d", ResourceActionDirection.CREATE, 60000);
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.CREATE), criticalPath(context(1)), manifest, Collections.emptyList(), this::recordingAction, history, new ApplyState(null, null, "cluster"))
+                .execute();
+
+        assertBefore("create d", "create b");
+    }
+
+    @Test
+    public void waitsDoNotHoldExecutionSlots() {
+
+        // with a single slot, b and d must both start while a is still waiting to become ready
+        CompletableFuture<Void> aReady = new CompletableFuture<>();
+        TugManifest manifest = new TugManifest();
+        manifest.setDeployments(Arrays.asList(
+                deployment("a"),
+                deployment("b"),
+                deployment("c", "a")));
+
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.CREATE), context(1), manifest, Collections.emptyList(), deployment -> new ResourceAction() {
+            @Override
+            public CompletableFuture<Void> makeReady() {
+                events.add("create " + deployment.getName());
+                if (deployment.getName().equals("a")) {
+                    return aReady;
+                }
+                if (deployment.getName().equals("b")) {
+                    aReady.complete(null);
+                }
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public CompletableFuture<Void> delete() {
+                return CompletableFuture.completedFuture(null);
+            }
+        }, new DurationHistory(null), new ApplyState(null, null, "cluster")).execute();
+
+        assertBefore("create a", "create b");
+        assertBefore("create b", "create c");
+    }
+
+    @Test(timeout = 10000)
+    public void startsDependentsOnCreatedBeforeReady() {
+
+        // b only needs a to exist and is what lets a become ready, c needs a ready
+        CompletableFuture<Void> aReady = new CompletableFuture<>();
+        TugManifest manifest = new TugManifest();
+        Deployment b = deployment("b");
+        b.getDependencies().add(new Dependency("a", TugManifest.Milestone.CREATED));
+        manifest.setDeployments(Arrays.asList(deployment("a"), b, deployment("c", "a")));
+
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.CREATE), context(2), manifest, Collections.emptyList(), deployment -> new ResourceAction() {
+            @Override
+            public CompletableFuture<Void> makeReady() {
+                events.add("create " + deployment.getName());
+                if (deployment.getName().equals("b")) {
+                    aReady.complete(null);
+                }
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public CompletableFuture<Boolean> makeReady(Runnable created) {
+                if (!deployment.getName().equals("a")) {
+                    return ResourceAction.super.makeReady(created);
+                }
+                events.add("create a");
+                created.run();
+                return aReady.thenApply(ready -> events.add("ready a"));
+            }
+
+            @Override
+            public CompletableFuture<Void> delete() {
+                return CompletableFuture.completedFuture(null);
+            }
+        }, new DurationHistory(null), new ApplyState(null, null, "cluster")).execute();
+
+        assertBefore("create a", "create b");
+        assertBefore("create b", "ready a");
+        assertBefore("ready a", "create c");
+    }
+
+    @Test
+    public void repushDeletesBeforeRecreating() {
+
+        new ResourceActionGraphExecutor(EnumSet.allOf(ResourceActionDirection.class), context(4), manifest(), Collections.emptyList(), this::recordingAction, new DurationHistory(null), new ApplyState(null, null, "cluster"))
+                .execute();
+
+        assertEquals(8, events.size());
+        for (String name : Arrays.asList("a", "b", "c", "d")) {
+            assertBefore("delete " + name, "create " + name);
+        }
+        assertBefore("delete c", "delete b");
+        assertBefore("delete b", "delete a");
+        assertBefore("create a", "create b");
+        assertBefore("create b", "create c");
+    }
+
+    @Test(timeout = 10000)
+    public void repushRecreatesWithoutWaitingForUnrelatedDeletes() {
+
+        // y can only finish deleting once x has been recreated
+        CompletableFuture<Void> xCreated = new CompletableFuture<>();
+        TugManifest manifest = new TugManifest();
+        manifest.setDeployments(Arrays.asList(
+                deployment("x"),
+                deployment("y")));
+
+        new ResourceActionGraphExecutor(EnumSet.allOf(ResourceActionDirection.class), context(2), manifest, Collections.emptyList(), deployment -> new ResourceAction() {
+            @Override
+            public CompletableFuture<Void> makeReady() {
+                events.add("create " + deployment.getName());
+                if (deployment.getName().equals("x")) {
+                    xCreated.complete(null);
+                }
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public CompletableFuture<Void> delete() {
+                events.add("delete " + deployment.getName());
+                return deployment.getName().equals("y") ? xCreated : CompletableFuture.completedFuture(null);
+            }
+        }, new DurationHistory(null), new ApplyState(null, null, "cluster")).execute();
+
+        assertBefore("create x", "create y");
+    }
+
+    @Test
+    public void listsEachSnapshotGroupOnceBeforeStarting() {
+
+        // a and b share a group, c and d share another, each resource only counts as created if its group was listed
+        List<String> lists = new CopyOnWriteArrayList<>();
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.CREATE), context(4), manifest(), Collections.emptyList(), deployment -> new ResourceAction() {
+            private Map<String, Object> snapshot;
+
+            @Override
+            public CompletableFuture<Void> makeReady() {
+                if (snapshot != null && snapshot.containsKey(deployment.getName())) {
+                    events.add("create " + deployment.getName());
+                }
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public CompletableFuture<Void> delete() {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public String getSnapshotKey() {
+                return deployment.getName().compareTo("c") < 0 ? "ab" : "cd";
+            }
+
+            @Override
+            public Map<String, Object> listSnapshot() {
+                lists.add(getSnapshotKey());
+                Map<String, Object> snapshot = new HashMap<>();
+                for (String name : getSnapshotKey().split("")) {
+                    snapshot.put(name, deployment);
+                }
+                return snapshot;
+            }
+
+            @Override
+            public void useSnapshot(Map<String, Object> snapshot) {
+                this.snapshot = snapshot;
+            }
+        }, new DurationHistory(null), new ApplyState(null, null, "cluster")).execute();
+
+        assertEquals(2, lists.size());
+        assertEquals(new HashSet<>(Arrays.asList("ab", "cd")), new HashSet<>(lists));
+        assertEquals(4, events.size());
+    }
+
+    @Test
+    public void skipsResourcesUnchangedSinceLastPush() throws IOException {
+
+        Path root = folder.getRoot().toPath();
+        for (String name : Arrays.asList("a", "b", "c", "d")) {
+            Files.write(root.resolve(name + ".yaml"), ("name: " + name).getBytes(StandardCharsets.UTF_8));
+        }
+        ApplyState state = new ApplyState(root.resolve(".tug/state"), root, "cluster");
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.CREATE), context(4), manifest(), Collections.emptyList(), this::recordingAction, new DurationHistory(null), state)
+                .execute();
+        assertEquals(4, events.size());
+
+        events.clear();
+        Files.write(root.resolve("b.yaml"), "name: changed".getBytes(StandardCharsets.UTF_8));
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.CREATE), context(4), manifest(), Collections.emptyList(), this::recordingAction, new DurationHistory(null),
+                new ApplyState(root.resolve(".tug/state"), root, "cluster"))
+                .execute();
+        assertEquals(Collections.singletonList("create b"), events);
+
+        events.clear();
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.CREATE), context(4), manifest(), Collections.emptyList(), this::recordingAction, new DurationHistory(null),
+                new ApplyState(root.resolve(".tug/state"), root, "other cluster"))
+                .execute();
+        assertEquals(4, events.size());
+
+        events.clear();
+        ResourceActionContext verifying = context(4);
+        verifying.getOptions().setVerify(true);
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.CREATE), verifying, manifest(), Collections.emptyList(), this::recordingAction, new DurationHistory(null),
+                new ApplyState(root.resolve(".tug/state"), root, "other cluster"))
+                .execute();
+        assertEquals(4, events.size());
+    }
+
+    @Test
+    public void updatesResourcesLeftDifferingWithoutUpdate() throws IOException {
+
+        // b exists in the cluster with a different configuration, which only a push with -u changes
+        Path root = folder.getRoot().toPath();
+        for (String name : Arrays.asList("a", "b", "c", "d")) {
+            Files.write(root.resolve(name + ".yaml"), ("name: " + name).getBytes(StandardCharsets.UTF_8));
+        }
+        Function<ResourceActionContext, Function<Deployment, ResourceAction>> actions = context -> deployment -> new ResourceAction() {
+            @Override
+            public CompletableFuture<Void> makeReady() {
+                return makeReady(() -> { }).thenAccept(current -> { });
+            }
+
+            @Override
+            public CompletableFuture<Boolean> makeReady(Runnable created) {
+                boolean update = context.getOptions().isUpdate();
+                events.add((update ? "update " : "create ") + deployment.getName());
+                created.run();
+                return CompletableFuture.completedFuture(!deployment.getName().equals("b") || update);
+            }
+
+            @Override
+            public CompletableFuture<Void> delete() {
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+
+        ResourceActionContext pushing = context(4);
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.CREATE), pushing, manifest(), Collections.emptyList(), actions.apply(pushing), new DurationHistory(null),
+                new ApplyState(root.resolve(".tug/state"), root, "cluster"))
+                .execute();
+        assertEquals(4, events.size());
+
+        events.clear();
+        ResourceActionContext updating = context(4);
+        updating.getOptions().setUpdate(true);
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.CREATE), updating, manifest(), Collections.emptyList(), actions.apply(updating), new DurationHistory(null),
+                new ApplyState(root.resolve(".tug/state"), root, "cluster"))
+                .execute();
+        assertEquals(Collections.singletonList("update b"), events);
+    }
+
+    @Test
+    public void limitsConcurrentActionsPerKindAndNamespace() {
+
+        // four independent pods, two in each namespace, with room for two actions at once and one pod per namespace
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        Map<String, AtomicInteger> perNamespace = new ConcurrentHashMap<>();
+        TugManifest manifest = new TugManifest();
+        manifest.setDeployments(Arrays.asList(deployment("a"), deployment("b"), deployment("c"), deployment("d")));
+        manifest.getConcurrency().getKinds().put("Pod", 2);
+        manifest.getConcurrency().getNamespaces().put("one", 1);
+        ResourceActionContext context = context(4);
+        context.getOptions().getNamespaceConcurrency().put("two", 1);
+
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.CREATE), context, manifest, Collections.emptyList(), deployment -> new ResourceAction() {
+            @Override
+            public CompletableFuture<Void> makeReady() {
+                AtomicInteger namespace = perNamespace.computeIfAbsent(getNamespace(), n -> new AtomicInteger());
+                if (namespace.incrementAndGet() > 1) {
+                    events.add("too many in " + getNamespace());
+                }
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                // the API calls are issued on the calling thread
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                namespace.decrementAndGet();
+                inFlight.decrementAndGet();
+                events.add("create " + deployment.getName());
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public CompletableFuture<Void> delete() {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public String getKind() {
+                return "Pod";
+            }
+
+            @Override
+            public String getNamespace() {
+                return deployment.getName().compareTo("c") < 0 ? "one" : "two";
+            }
+        }, new DurationHistory(null), new ApplyState(null, null, "cluster")).execute();
+
+        assertEquals(4, events.size());
+        assertTrue(maxInFlight.get() <= 2);
+    }
+
+    @Test(timeout = 10000)
+    public void waitsDoNotHoldKindLimits() {
+
+        // one pod at a time, and a only becomes ready once b, which only needs a created, has been started
+        TugManifest manifest = new TugManifest();
+        manifest.setDeployments(Arrays.asList(deployment("a"), deployment("b")));
+        manifest.getDeployments().get(1).setDependencies(Collections.singleton(new Dependency("a", TugManifest.Milestone.CREATED)));
+        manifest.getConcurrency().getKinds().put("Pod", 1);
+        CompletableFuture<Void> bStarted = new CompletableFuture<>();
+
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.CREATE), context(4), manifest, Collections.emptyList(), deployment -> new ResourceAction() {
+            @Override
+            public CompletableFuture<Void> makeReady() {
+                return makeReady(() -> { }).thenApply(current -> null);
+            }
+
+            @Override
+            public CompletableFuture<Boolean> makeReady(Runnable created) {
+                events.add("create " + deployment.getName());
+                created.run();
+                if (deployment.getName().equals("b")) {
+                    bStarted.complete(null);
+                    return CompletableFuture.completedFuture(true);
+                }
+                return bStarted.thenApply(b -> true);
+            }
+
+            @Override
+            public CompletableFuture<Void> delete() {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public String getKind() {
+                return "Pod";
+            }
+        }, new DurationHistory(null), new ApplyState(null, null, "cluster")).execute();
+
+        assertEquals(Arrays.asList("create a", "create b"), events);
+    }
+
+    @Test
+    public void stopsAfterFailure() {
+
+        try {
+            new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.CREATE), context(4), manifest(), Collections.emptyList(), deployment -> new ResourceAction() {
+                @Override
+                public CompletableFuture<Void> makeReady() {
+                    CompletableFuture<Void> result = new CompletableFuture<>();
+                    if (deployment.getName().equals("a")) {
+                        result.completeExceptionally(new ResourceActionException("boom"));
+                    } else {
+                        events.add("create " + deployment.getName());
+                        result.complete(null);
+                    }
+                    return result;
+                }
+
+                @Override
+                public CompletableFuture<Void> delete() {
+                    return CompletableFuture.completedFuture(null);
+                }
+            }, new DurationHistory(null), new ApplyState(null, null, "cluster")).execute();
+            fail("expected failure");
+        } catch (RuntimeException e) {
+            assertTrue(events.isEmpty());
+        }
+    }
+
+    private ResourceAction namespacedAction(Deployment deployment, String clusterScoped) {
+
+        return new ResourceAction() {
+            @Override
+            public CompletableFuture<Void> makeReady() {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public CompletableFuture<Void> delete() {
+                events.add("delete " + deployment.getName());
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public String getOwnedNamespace() {
+                return deployment.getName().equals("a") ? "web" : null;
+            }
+
+            @Override
+            public String getNamespace() {
+                return deployment.getName().equals("a") || deployment.getName().equals(clusterScoped) ? null : "web";
+            }
+        };
+    }
+
+    @Test
+    public void deletesNamespaceWithItsContents() {
+
+        ResourceActionContext context = context(4);
+        context.getOptions().setNamespaceCascade(true);
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.DELETE), context, manifest(), Collections.emptyList(),
+                deployment -> namespacedAction(deployment, null), new DurationHistory(null), new ApplyState(null, null, "cluster"))
+                .execute();
+
+        assertEquals(Collections.singletonList("delete a"), events);
+    }
+
+    @Test
+    public void deletesContentsFirstWhenDependedOnFromOutsideNamespace() {
+
+        ResourceActionContext context = context(4);
+        context.getOptions().setNamespaceCascade(true);
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.DELETE), context, manifest(), Collections.emptyList(),
+                deployment -> namespacedAction(deployment, "d"), new DurationHistory(null), new ApplyState(null, null, "cluster"))
+                .execute();
+
+        assertEquals(4, events.size());
+        assertBefore("delete c", "delete b");
+        assertBefore("delete b", "delete a");
+    }
+
+    @Test
+    public void recreatesContentsOfCascadedNamespaceWithoutSnapshot() {
+
+        ResourceActionContext context = context(4);
+        context.getOptions().setNamespaceCascade(true);
+        new ResourceActionGraphExecutor(EnumSet.allOf(ResourceActionDirection.class), context, manifest(), Collections.emptyList(), deployment -> new ResourceAction() {
+            private Map<String, Object> snapshot;
+
+            @Override
+            public CompletableFuture<Void> makeReady() {
+                // a snapshot listed before the namespace went would still show the resource
+                Map<String, Object> initial = snapshot;
+                snapshot = null;
+                events.add((initial != null && initial.containsKey(deployment.getName()) ? "skip create " : "create ") + deployment.getName());
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public CompletableFuture<Void> delete() {
+                snapshot = null;
+                events.add("delete " + deployment.getName());
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public String getOwnedNamespace() {
+                return deployment.getName().equals("a") ? "web" : null;
+            }
+
+            @Override
+            public String getNamespace() {
+                return deployment.getName().equals("a") ? null : "web";
+            }
+
+            @Override
+            public String getSnapshotKey() {
+                return getNamespace() == null ? "Namespace" : "Pod/web";
+            }
+
+            @Override
+            public Map<String, Object> listSnapshot() {
+                Map<String, Object> existing = new HashMap<>();
+                Arrays.asList("a", "b", "c", "d").forEach(name -> existing.put(name, name));
+                return existing;
+            }
+
+            @Override
+            public void useSnapshot(Map<String, Object> snapshot) {
+                this.snapshot = snapshot;
+            }
+        }, new DurationHistory(null), new ApplyState(null, null, "cluster")).execute();
+
+        assertEquals(5, events.size());
+        assertTrue(events.containsAll(Arrays.asList("delete a", "create a", "create b", "create c", "create d")));
+        assertBefore("delete a", "create b");
+    }
+
+    @Test
+    public void waitsOnlyForDeletionsOthersFollow() {
+
+        ResourceActionContext context = context(4);
+        context.getOptions().setDeleteWait(false);
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.DELETE), context, manifest(), Collections.emptyList(), deployment -> new ResourceAction() {
+            @Override
+            public CompletableFuture<Void> makeReady() {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public CompletableFuture<Void> delete() {
+                return delete(true);
+            }
+
+            @Override
+            public CompletableFuture<Void> delete(boolean awaitGone) {
+                events.add((awaitGone ? "delete " : "delete without waiting ") + deployment.getName());
+                return CompletableFuture.completedFuture(null);
+            }
+        }, new DurationHistory(null), new ApplyState(null, null, "cluster")).execute();
+
+        assertEquals(4, events.size());
+        assertBefore("delete c", "delete b");
+        assertBefore("delete b", "delete without waiting a");
+        assertTrue(events.contains("delete d"));
+    }
+
+    @Test
+    public void waitsForDeletionsACreationFollows() {
+
+        ResourceActionContext context = context(4);
+        context.getOptions().setDeleteWait(false);
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.DELETE), context, manifest(), Collections.emptyList(),
+                this::awaitGoneRecorder, new DurationHistory(null), new ApplyState(null, null, "cluster"), true).execute();
+
+        assertEquals(4, events.size());
+        assertTrue(events.containsAll(Arrays.asList("delete a", "delete b", "delete c", "delete d")));
+    }
+
+    @Test
+    public void waitsForDeletionsRecreatedInTheSameRun() {
+
+        ResourceActionContext context = context(4);
+        context.getOptions().setDeleteWait(false);
+        new ResourceActionGraphExecutor(EnumSet.of(ResourceActionDirection.DELETE, ResourceActionDirection.CREATE), context, manifest(),
+                Collections.emptyList(), this::awaitGoneRecorder, new DurationHistory(null), new ApplyState(null, null, "cluster")).execute();
+
+        assertEquals(8, events.size());
+        assertTrue(events.containsAll(Arrays.asList("delete a", "delete b", "delete c", "delete d")));
+        assertBefore("delete a", "create a");
+        assertBefore("delete d", "create d");
+    }
+
+    private ResourceAction awaitGoneRecorder(Deployment deployment) {
+
+        return new ResourceAction() {
+            @Override
+            public CompletableFuture<Void> makeReady() {
+                events.add("create " + deployment.getName());
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public CompletableFuture<Void> delete() {
+                return delete(true);
+            }
+
+            @Override
+            public CompletableFuture<Void> delete(boolean awaitGone) {
+                events.add((awaitGone ? "delete " : "delete without waiting ") + deployment.getName());
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+    }
+}
@@ -0,0 +1,110 @@
+package cloud.nimburst.tug.actions;
+
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import io.kubernetes.client.ApiClient;
+import io.kubernetes.client.models.V1DeleteOptions;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CollectionDeleterTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final List<String> byName = new CopyOnWriteArrayList<>();
+
+    @After
+    public void shutdown() {
+
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Builds a deleter whose delete collection requests are recorded and answered with the given status code.
+     */
+    private CollectionDeleter deleter(int code) {
+
+        ApiClient client = new ApiClient();
+        client.getHttpClient().interceptors().add(chain -> {
+            requests.add(chain.request().method() + " " + URLDecoder.decode(chain.request().urlString(), "UTF-8"));
+            return new Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(code)
+                    .body(ResponseBody.create(MediaType.parse("application/json"), "{}"))
+                    .build();
+        });
+        return new CollectionDeleter("Pod in test", client, "/api/v1/namespaces/test/pods", new V1DeleteOptions(), scheduler);
+    }
+
+    @Test
+    public void selectsResourcesByNameLabel() {
+
+        assertEquals("tug.nimburst.cloud/name in (a,b)", CollectionDeleter.selector(Arrays.asList("a", "b")));
+    }
+
+    @Test
+    public void deletesLoneResourceByNameAtOnce() {
+
+        CollectionDeleter deleter = deleter(200);
+
+        assertTrue(deleter.delete("a", () -> byName.add("a")).isDone());
+        assertEquals(Collections.singletonList("a"), byName);
+        assertTrue(requests.isEmpty());
+        deleter.close();
+    }
+
+    @Test
+    public void deletesResourcesAskedForMeanwhileWithOneRequest() throws Exception {
+
+        CollectionDeleter deleter = deleter(200);
+        CompletableFuture<?>[] meanwhile = new CompletableFuture<?>[2];
+
+        deleter.delete("a", () -> {
+            // b and c are asked for while a is still being deleted
+            meanwhile[0] = deleter.delete("b", () -> byName.add("b"));
+            meanwhile[1] = deleter.delete("c", () -> byName.add("c"));
+            byName.add("a");
+        }).get(5, TimeUnit.SECONDS);
+        CompletableFuture.allOf(meanwhile).get(5, TimeUnit.SECONDS);
+
+        assertEquals(Collections.singletonList("a"), byName);
+        assertEquals(1, requests.size());
+        assertEquals("DELETE https://localhost/api/v1/namespaces/test/pods?labelSelector=tug.nimburst.cloud/name in (b,c)",
+                requests.get(0));
+        deleter.close();
+    }
+
+    @Test
+    public void deletesByNameWhereCollectionsCannotBeDeleted() throws Exception {
+
+        CollectionDeleter deleter = deleter(405);
+        CompletableFuture<?>[] meanwhile = new CompletableFuture<?>[2];
+
+        deleter.delete("a", () -> {
+            meanwhile[0] = deleter.delete("b", () -> byName.add("b"));
+            meanwhile[1] = deleter.delete("c", () -> byName.add("c"));
+            byName.add("a");
+        }).get(5, TimeUnit.SECONDS);
+        CompletableFuture.allOf(meanwhile).get(5, TimeUnit.SECONDS);
+        deleter.delete("d", () -> byName.add("d")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("a", "b", "c", "d"), byName);
+        assertEquals(1, requests.size());
+        deleter.close();
+    }
+}
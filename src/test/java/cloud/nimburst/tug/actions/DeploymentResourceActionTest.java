@@ -1,9 +1,13 @@
 package cloud.nimburst.tug.actions;
 
+import cloud.nimburst.tug.ResourceActionContext;
 import cloud.nimburst.tug.TugManifest;
+import cloud.nimburst.tug.TugOptions;
 import cloud.nimburst.tug.TugManifest.Deployment;
 import cloud.nimburst.tug.YamlParser;
 import com.fasterxml.jackson.databind.JsonNode;
+import io.kubernetes.client.models.V1beta2DeploymentCondition;
+import io.kubernetes.client.models.V1beta2DeploymentStatus;
 import org.junit.Test;
 
 import java.nio.file.Path;
@@ -32,6 +36,31 @@ public class DeploymentResourceActionTest {
         }
 
 
-        DeploymentResourceAction action = new DeploymentResourceAction(resource, deployment);
+        try (ResourceActionContext context = new ResourceActionContext(new TugOptions())) {
+            DeploymentResourceAction action = new DeploymentResourceAction(resource, deployment, context);
+        }
+    }
+
+    @Test
+    public void failsOnceRolloutStopsProgressing() {
+
+        V1beta2DeploymentStatus status = new V1beta2DeploymentStatus()
+                .addConditionsItem(new V1beta2DeploymentCondition().type("Available").status("False").reason("MinimumReplicasUnavailable"));
+        assertNull(DeploymentResourceAction.failure(status));
+
+        status.addConditionsItem(new V1beta2DeploymentCondition().type("Progressing").status("False")
+                .reason("ProgressDeadlineExceeded").message("ReplicaSet \"app-1\" has timed out progressing."));
+        assertEquals("its rollout stopped progressing (ProgressDeadlineExceeded): ReplicaSet \"app-1\" has timed out progressing.",
+                DeploymentResourceAction.failure(status));
+    }
+
+    @Test
+    public void requiresReplicasFromManifest() {
+
+        assertEquals(1, DeploymentResourceAction.requiredReplicas(null, 10));
+        assertEquals(4, DeploymentResourceAction.requiredReplicas("4", 10));
+        assertEquals(3, DeploymentResourceAction.requiredReplicas("30%", 10));
+        assertEquals(2, DeploymentResourceAction.requiredReplicas("30%", 5));
+        assertEquals(1, DeploymentResourceAction.requiredReplicas("0%", 5));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,193 @@
+package cloud.nimburst.tug.actions;
+
+import cloud.nimburst.tug.ResourceActionContext;
+import cloud.nimburst.tug.TugOptions;
+import com.google.gson.reflect.TypeToken;
+import com.squareup.okhttp.Call;
+import io.kubernetes.client.ApiException;
+import io.kubernetes.client.models.V1ObjectMeta;
+import io.kubernetes.client.models.V1Pod;
+import io.kubernetes.client.models.V1PodStatus;
+import io.kubernetes.client.util.Watch;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class InformerTest {
+
+    private static final Type WATCH_TYPE = new TypeToken<Watch.Response<V1Pod>>() {}.getType();
+
+    private final ResourceActionContext context = new ResourceActionContext(new TugOptions());
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> watches = new CopyOnWriteArrayList<>();
+
+    @After
+    public void closeContext() {
+
+        release.countDown();
+        context.close();
+    }
+
+    private static V1Pod pod(String name, String phase) {
+
+        return new V1Pod().metadata(new V1ObjectMeta().name(name)).status(new V1PodStatus().phase(phase));
+    }
+
+    private static boolean running(V1Pod pod) {
+
+        return pod != null && "Running".equals(pod.getStatus().getPhase());
+    }
+
+    /**
+     * Builds an informer whose watches answer with the given responses in turn, then block until the test ends.
+     */
+    private Informer<V1Pod> informer(Informer.Lister<V1Pod> lister, Call... responses) {
+
+        return new Informer<>("Pod in test", lister,
+                (client, resourceVersion, timeoutSeconds) -> {
+                    watches.add(resourceVersion);
+                    return watches.size() <= responses.length ? responses[watches.size() - 1] : WatchCalls.blocking(release);
+                },
+                WATCH_TYPE, V1Pod::getMetadata, context);
+    }
+
+    private void awaitWatches(int count) throws InterruptedException {
+
+        for (int i = 0; i < 500 && watches.size() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(watches.size() >= count);
+    }
+
+    @Test
+    public void fillsTheCacheFromTheListAndWatchesFromItsVersion() throws Exception {
+
+        Informer<V1Pod> informer = informer(() -> new Listing<>(Arrays.asList(pod("a", "Pending"), pod("b", "Running")), "4"),
+                WatchCalls.events(
+                        WatchCalls.podEvent("MODIFIED", "a", "5", "Running"),
+                        WatchCalls.podEvent("DELETED", "b", "6", "Running"),
+                        WatchCalls.podEvent("ADDED", "c", "7", "Pending")))
+                .start();
+
+        informer.synced().get(5, TimeUnit.SECONDS);
+        informer.await("c", pod -> pod != null).get(5, TimeUnit.SECONDS);
+        awaitWatches(2);
+
+        assertTrue(running(informer.get("a")));
+        assertNull(informer.get("b"));
+        assertEquals(Arrays.asList("4", "7"), watches.subList(0, 2));
+        informer.close();
+    }
+
+    @Test
+    public void tellsWaitersWhenTheirResourceChanges() throws Exception {
+
+        Informer<V1Pod> informer = informer(() -> new Listing<>(Arrays.asList(pod("a", "Pending"), pod("b", "Pending")), "4"),
+                WatchCalls.events(
+                        WatchCalls.podEvent("MODIFIED", "b", "5", "Running"),
+                        WatchCalls.podEvent("MODIFIED", "a", "6", "Running")));
+
+        AtomicInteger checks = new AtomicInteger();
+        CompletableFuture<Void> a = informer.await("a", pod -> {
+            checks.incrementAndGet();
+            return running(pod);
+        });
+        CompletableFuture<Void> gone = informer.await("gone", pod -> pod == null);
+        informer.start();
+        a.get(5, TimeUnit.SECONDS);
+        gone.get(5, TimeUnit.SECONDS);
+
+        // twice against the list, as it syncs and as it notifies, and once for its own change, but not for b
+        assertEquals(3, checks.get());
+        informer.close();
+    }
+
+    @Test
+    public void relistsAfterAnErrorEvent() throws Exception {
+
+        AtomicInteger lists = new AtomicInteger();
+        Informer<V1Pod> informer = informer(() -> lists.incrementAndGet() == 1
+                        ? new Listing<>(Arrays.asList(pod("a", "Pending"), pod("b", "Pending")), "4")
+                        : new Listing<>(Arrays.asList(pod("a", "Running")), "9"),
+                WatchCalls.events("{\"type\":\"ERROR\",\"object\":{\"metadata\":{}}}"))
+                .start();
+
+        informer.await("b", pod -> pod == null).get(5, TimeUnit.SECONDS);
+        awaitWatches(2);
+
+        assertEquals(2, lists.get());
+        assertTrue(running(informer.get("a")));
+        assertEquals(Arrays.asList("4", "9"), watches.subList(0, 2));
+        informer.close();
+    }
+
+    @Test
+    public void relistsAfterTheWatchFails() throws Exception {
+
+        AtomicInteger lists = new AtomicInteger();
+        Informer<V1Pod> informer = new Informer<>("Pod in test",
+                () -> new Listing<>(Arrays.asList(pod("a", lists.incrementAndGet() == 1 ? "Pending" : "Running")), String.valueOf(lists.get())),
+                (client, resourceVersion, timeoutSeconds) -> {
+                    watches.add(resourceVersion);
+                    if (watches.size() == 1) {
+                        throw new ApiException(500, "unavailable");
+                    }
+                    return WatchCalls.blocking(release);
+                },
+                WATCH_TYPE, V1Pod::getMetadata, context).start();
+
+        informer.await("a", InformerTest::running).get(5, TimeUnit.SECONDS);
+        awaitWatches(2);
+
+        assertEquals(Arrays.asList("1", "2"), watches.subList(0, 2));
+        informer.close();
+    }
+
+    @Test
+    public void failsToSyncWhenTheListFails() throws Exception {
+
+        Informer<V1Pod> informer = informer(() -> {
+            throw new ApiException(403, "forbidden");
+        }).start();
+
+        try {
+            informer.synced().get(5, TimeUnit.SECONDS);
+            fail("the cache should not have synced");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ApiException);
+        }
+        try {
+            informer.synced().join();
+            fail("the cache should not have synced");
+        } catch (CompletionException e) {
+            assertTrue(watches.isEmpty());
+        }
+        informer.close();
+    }
+
+    @Test
+    public void stopsWatchingOnceClosed() throws Exception {
+
+        Informer<V1Pod> informer = informer(() -> new Listing<>(Arrays.asList(pod("a", "Pending")), "4")).start();
+        informer.synced().get(5, TimeUnit.SECONDS);
+        awaitWatches(1);
+
+        informer.close();
+        release.countDown();
+        Thread.sleep(100);
+
+        assertEquals(1, watches.size());
+    }
+}
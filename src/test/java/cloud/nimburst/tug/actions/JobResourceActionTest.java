@@ -0,0 +1,38 @@
+package cloud.nimburst.tug.actions;
+
+import io.kubernetes.client.models.V1Job;
+import io.kubernetes.client.models.V1JobCondition;
+import io.kubernetes.client.models.V1JobSpec;
+import io.kubernetes.client.models.V1JobStatus;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JobResourceActionTest {
+
+    @Test
+    public void completesAfterAllCompletions() {
+
+        V1Job job = new V1Job().spec(new V1JobSpec().completions(3)).status(new V1JobStatus().succeeded(1).active(2));
+        assertFalse(JobResourceAction.complete(job));
+
+        job.getStatus().succeeded(3).active(0);
+        assertTrue(JobResourceAction.complete(job));
+
+        V1Job queue = new V1Job().spec(new V1JobSpec().parallelism(2)).status(new V1JobStatus().succeeded(1).active(1));
+        assertFalse(JobResourceAction.complete(queue));
+        queue.getStatus().addConditionsItem(new V1JobCondition().type("Complete").status("True"));
+        assertTrue(JobResourceAction.complete(queue));
+    }
+
+    @Test
+    public void failsOnFailedCondition() {
+
+        V1Job job = new V1Job().spec(new V1JobSpec().backoffLimit(2)).status(new V1JobStatus().failed(3)
+                .addConditionsItem(new V1JobCondition().type("Failed").status("True")
+                        .reason("BackoffLimitExceeded").message("Job has reached the specified backoff limit")));
+
+        assertEquals("BackoffLimitExceeded: Job has reached the specified backoff limit", JobResourceAction.failure(job));
+        assertNull(JobResourceAction.failure(new V1Job().status(new V1JobStatus().active(1))));
+    }
+}
@@ -0,0 +1,39 @@
+package cloud.nimburst.tug.actions;
+
+import io.kubernetes.client.models.V1Pod;
+import io.kubernetes.client.models.V1PodCondition;
+import io.kubernetes.client.models.V1PodStatus;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JsonPathConditionTest {
+
+    private final V1Pod pod = new V1Pod().status(new V1PodStatus().phase("Running")
+            .addConditionsItem(new V1PodCondition().type("Initialized").status("True"))
+            .addConditionsItem(new V1PodCondition().type("Ready").status("False")));
+
+    @Test
+    public void comparesValueAtPath() {
+
+        assertTrue(JsonPathCondition.parse("{.status.phase}=Running").test(pod));
+        assertFalse(JsonPathCondition.parse("{.status.phase}=Pending").test(pod));
+        assertTrue(JsonPathCondition.parse("{.status.conditions[0].status}=True").test(pod));
+        assertFalse(JsonPathCondition.parse("{.status.conditions[?(@.type==\"Ready\")].status}=True").test(pod));
+        assertTrue(JsonPathCondition.parse("{.status.conditions[?(@.type=='Initialized')].status}=True").test(pod));
+    }
+
+    @Test
+    public void checksPresenceWithoutValue() {
+
+        assertTrue(JsonPathCondition.parse("{.status.phase}").test(pod));
+        assertFalse(JsonPathCondition.parse("{.status.podIP}").test(pod));
+        assertFalse(JsonPathCondition.parse("{.status.conditions[5]}").test(pod));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnsupportedPath() {
+
+        JsonPathCondition.parse("{.status.containerStatuses[*].ready}=true");
+    }
+}
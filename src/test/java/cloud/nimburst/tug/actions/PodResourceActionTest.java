@@ -0,0 +1,66 @@
+package cloud.nimburst.tug.actions;
+
+import io.kubernetes.client.models.V1Container;
+import io.kubernetes.client.models.V1ContainerState;
+import io.kubernetes.client.models.V1ContainerStateRunning;
+import io.kubernetes.client.models.V1ContainerStateTerminated;
+import io.kubernetes.client.models.V1ContainerStateWaiting;
+import io.kubernetes.client.models.V1ContainerStatus;
+import io.kubernetes.client.models.V1Pod;
+import io.kubernetes.client.models.V1PodSpec;
+import io.kubernetes.client.models.V1PodStatus;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class PodResourceActionTest {
+
+    private static V1Pod pod(String image, V1ContainerStatus status) {
+
+        return new V1Pod()
+                .spec(new V1PodSpec().addContainersItem(new V1Container().name("app").image(image)))
+                .status(new V1PodStatus().phase("Pending").addContainerStatusesItem(status.name("app").image("app:1")));
+    }
+
+    @Test
+    public void failsOnTerminalWaitingReason() {
+
+        V1ContainerStatus status = new V1ContainerStatus().ready(false).restartCount(0)
+                .state(new V1ContainerState().waiting(new V1ContainerStateWaiting().reason("ImagePullBackOff").message("not found")));
+
+        assertEquals("container 'app' is waiting in ImagePullBackOff: not found", PodResourceAction.failure(pod("app:1", status), Collections.emptySet()));
+        // a sidecar which is not waited on may fail
+        assertNull(PodResourceAction.failure(pod("app:1", status), Collections.singleton("main")));
+        // the status still describes the image before an update
+        assertNull(PodResourceAction.failure(pod("app:2", status), Collections.emptySet()));
+    }
+
+    @Test
+    public void failsAfterRepeatedRestarts() {
+
+        V1ContainerStatus status = new V1ContainerStatus().ready(false).restartCount(3)
+                .state(new V1ContainerState().running(new V1ContainerStateRunning()))
+                .lastState(new V1ContainerState().terminated(new V1ContainerStateTerminated().exitCode(1)));
+
+        assertEquals("container 'app' has restarted 3 times, last exiting with code 1", PodResourceAction.failure(pod("app:1", status), Collections.emptySet()));
+        assertNull(PodResourceAction.failure(pod("app:1", status.restartCount(2)), Collections.emptySet()));
+    }
+
+    @Test
+    public void findsReadinessContainersMissingFromSpec() {
+
+        V1PodSpec spec = new V1PodSpec()
+                .addInitContainersItem(new V1Container().name("setup"))
+                .addContainersItem(new V1Container().name("app"))
+                .addContainersItem(new V1Container().name("proxy"));
+
+        assertTrue(PodResourceAction.unknownContainers(spec, new HashSet<>(Arrays.asList("app", "proxy"))).isEmpty());
+        assertEquals(Arrays.asList("setup", "web"),
+                PodResourceAction.unknownContainers(spec, new HashSet<>(Arrays.asList("web", "app", "setup"))));
+        assertEquals(Collections.singletonList("app"), PodResourceAction.unknownContainers(null, Collections.singleton("app")));
+    }
+}
@@ -0,0 +1,135 @@
+package cloud.nimburst.tug.actions;
+
+import io.kubernetes.client.models.V1ObjectMeta;
+import io.kubernetes.client.models.V1Pod;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PollerTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void shutdown() {
+
+        scheduler.shutdownNow();
+    }
+
+    private static V1Pod pod(String name) {
+
+        return new V1Pod().metadata(new V1ObjectMeta().name(name));
+    }
+
+    @Test
+    public void pollsAllWaitingResourcesWithOneList() throws Exception {
+
+        AtomicInteger lists = new AtomicInteger();
+        AtomicInteger reads = new AtomicInteger();
+        Poller<V1Pod> poller = new Poller<>("Pod in test",
+                (labelSelector, cached) -> {
+                    lists.incrementAndGet();
+                    return new Listing<>(Arrays.asList(pod("a"), pod("b")), "1");
+                },
+                (name, cached) -> {
+                    reads.incrementAndGet();
+                    return null;
+                },
+                (fieldSelector, labelSelector, cached) -> Collections.emptySet(),
+                null, V1Pod::getMetadata, scheduler, 100);
+
+        CompletableFuture<Void> a = poller.await("a", pod -> pod != null, true);
+        CompletableFuture<Void> b = poller.await("b", pod -> pod != null, true);
+        CompletableFuture<Void> c = poller.await("c", pod -> pod == null, true);
+        CompletableFuture.allOf(a, b, c).get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, lists.get());
+        assertEquals(0, reads.get());
+        poller.close();
+    }
+
+    @Test
+    public void readsResourcesMissingFromLabelledList() throws Exception {
+
+        List<String> selectors = Collections.synchronizedList(new ArrayList<>());
+        List<String> reads = Collections.synchronizedList(new ArrayList<>());
+        Poller<V1Pod> poller = new Poller<>("Pod in test",
+                (labelSelector, cached) -> {
+                    selectors.add(labelSelector);
+                    return new Listing<>(Collections.singletonList(pod("labelled")), "1");
+                },
+                (name, cached) -> {
+                    reads.add(name);
+                    return pod(name);
+                },
+                (fieldSelector, labelSelector, cached) -> Collections.emptySet(),
+                "managed-by=tug", V1Pod::getMetadata, scheduler, 100);
+
+        CompletableFuture<Void> labelled = poller.await("labelled", pod -> pod != null, true);
+        CompletableFuture<Void> unlabelled = poller.await("unlabelled", pod -> pod != null, true);
+        CompletableFuture.allOf(labelled, unlabelled).get(5, TimeUnit.SECONDS);
+
+        assertEquals(Collections.singletonList("managed-by=tug"), selectors);
+        assertEquals(Collections.singletonList("unlabelled"), reads);
+        poller.close();
+    }
+
+    @Test
+    public void listsOnlyMetadataForExistenceWaits() throws Exception {
+
+        AtomicInteger lists = new AtomicInteger();
+        AtomicInteger metadataLists = new AtomicInteger();
+        Poller<V1Pod> poller = new Poller<>("Pod in test",
+                (labelSelector, cached) -> {
+                    lists.incrementAndGet();
+                    return new Listing<>(Collections.emptyList(), "1");
+                },
+                (name, cached) -> null,
+                (fieldSelector, labelSelector, cached) -> {
+                    metadataLists.incrementAndGet();
+                    return Collections.singleton("created");
+                },
+                null, V1Pod::getMetadata, scheduler, 100);
+
+        CompletableFuture<Void> created = poller.awaitExistence("created", true, true);
+        CompletableFuture<Void> deleted = poller.awaitExistence("deleted", false, true);
+        CompletableFuture.allOf(created, deleted).get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, lists.get());
+        assertEquals(1, metadataLists.get());
+        poller.close();
+    }
+
+    @Test
+    public void readsFromQuorumWhileAnyWaitNeedsIt() throws Exception {
+
+        List<Boolean> cachedLists = Collections.synchronizedList(new ArrayList<>());
+        Poller<V1Pod> poller = new Poller<>("Pod in test",
+                (labelSelector, cached) -> {
+                    cachedLists.add(cached);
+                    return new Listing<>(Collections.singletonList(pod("a")), "1");
+                },
+                (name, cached) -> null,
+                (fieldSelector, labelSelector, cached) -> Collections.emptySet(),
+                null, V1Pod::getMetadata, scheduler, 100);
+
+        CompletableFuture<Void> strong = poller.await("a", pod -> pod != null, false);
+        CompletableFuture<Void> cached = poller.await("b", pod -> pod == null, true);
+        CompletableFuture.allOf(strong, cached).get(5, TimeUnit.SECONDS);
+        poller.await("a", pod -> pod != null, true).get(5, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList(false, true), cachedLists);
+        poller.close();
+    }
+}
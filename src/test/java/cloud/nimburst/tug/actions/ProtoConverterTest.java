@@ -0,0 +1,57 @@
+package cloud.nimburst.tug.actions;
+
+import io.kubernetes.client.models.V1Pod;
+import io.kubernetes.client.models.V1Service;
+import io.kubernetes.client.proto.IntStr;
+import io.kubernetes.client.proto.Meta;
+import io.kubernetes.client.proto.V1;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProtoConverterTest {
+
+    @Test
+    public void convertsPod() {
+
+        V1.Pod proto = V1.Pod.newBuilder()
+                .setMetadata(Meta.ObjectMeta.newBuilder()
+                        .setName("web")
+                        .setGeneration(3)
+                        .putLabels("app", "web")
+                        .setCreationTimestamp(Meta.Time.newBuilder().setSeconds(1500000000L)))
+                .setStatus(V1.PodStatus.newBuilder()
+                        .setPhase("Running")
+                        .addContainerStatuses(V1.ContainerStatus.newBuilder().setName("a").setReady(true))
+                        .addContainerStatuses(V1.ContainerStatus.newBuilder().setName("b").setReady(false)))
+                .build();
+
+        V1Pod pod = ProtoConverter.convert(proto, V1Pod.class);
+
+        assertEquals("web", pod.getMetadata().getName());
+        assertEquals(Long.valueOf(3), pod.getMetadata().getGeneration());
+        assertEquals("web", pod.getMetadata().getLabels().get("app"));
+        assertEquals(1500000000000L, pod.getMetadata().getCreationTimestamp().getMillis());
+        assertEquals("Running", pod.getStatus().getPhase());
+        assertEquals(2, pod.getStatus().getContainerStatuses().size());
+        assertTrue(pod.getStatus().getContainerStatuses().get(0).isReady());
+        assertFalse(pod.getStatus().getContainerStatuses().get(1).isReady());
+    }
+
+    @Test
+    public void convertsIntOrString() {
+
+        V1.Service proto = V1.Service.newBuilder()
+                .setSpec(V1.ServiceSpec.newBuilder()
+                        .addPorts(V1.ServicePort.newBuilder().setPort(80)
+                                .setTargetPort(IntStr.IntOrString.newBuilder().setType(0).setIntVal(8080)))
+                        .addPorts(V1.ServicePort.newBuilder().setPort(443)
+                                .setTargetPort(IntStr.IntOrString.newBuilder().setType(1).setStrVal("https"))))
+                .build();
+
+        V1Service service = ProtoConverter.convert(proto, V1Service.class);
+
+        assertEquals(Integer.valueOf(8080), service.getSpec().getPorts().get(0).getTargetPort().getIntValue());
+        assertEquals("https", service.getSpec().getPorts().get(1).getTargetPort().getStrValue());
+    }
+}
@@ -0,0 +1,87 @@
+package cloud.nimburst.tug.actions;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import io.kubernetes.client.models.V1ConfigMap;
+import io.kubernetes.client.models.V1Container;
+import io.kubernetes.client.models.V1ObjectMeta;
+import io.kubernetes.client.models.V1Pod;
+import io.kubernetes.client.models.V1PodSpec;
+import io.kubernetes.client.models.V1PodStatus;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ResourcePatchTest {
+
+    private V1Pod pod(String image) {
+
+        return new V1Pod()
+                .apiVersion("v1")
+                .kind("Pod")
+                .metadata(new V1ObjectMeta().name("web"))
+                .spec(new V1PodSpec().containers(Collections.singletonList(new V1Container().name("web").image(image))));
+    }
+
+    private V1Pod live(String image) {
+
+        // what the server returns: defaults filled in, status set, no kind on list items
+        V1Pod live = pod(image).apiVersion(null).kind(null);
+        live.getMetadata().namespace("default").resourceVersion("42").uid("abc");
+        live.getSpec().restartPolicy("Always").getContainers().get(0).imagePullPolicy("IfNotPresent");
+        return live.status(new V1PodStatus().phase("Running"));
+    }
+
+    @Test
+    public void ignoresServerPopulatedFields() {
+
+        assertEquals(0, ResourcePatch.diff(pod("nginx:1.13"), live("nginx:1.13")).size());
+    }
+
+    @Test
+    public void replacesChangedLists() {
+
+        JsonArray patch = ResourcePatch.diff(pod("nginx:1.14"), live("nginx:1.13"));
+
+        assertEquals(1, patch.size());
+        JsonObject operation = patch.get(0).getAsJsonObject();
+        assertEquals("replace", operation.get("op").getAsString());
+        assertEquals("/spec/containers", operation.get("path").getAsString());
+        assertEquals("nginx:1.14", operation.get("value").getAsJsonArray().get(0).getAsJsonObject().get("image").getAsString());
+    }
+
+    @Test
+    public void addsMissingFields() {
+
+        V1ConfigMap desired = new V1ConfigMap()
+                .metadata(new V1ObjectMeta().name("config").putLabelsItem("app/name", "web"))
+                .putDataItem("key", "value");
+        V1ConfigMap live = new V1ConfigMap()
+                .metadata(new V1ObjectMeta().name("config").resourceVersion("7"));
+
+        JsonArray patch = ResourcePatch.diff(desired, live);
+
+        Set<String> operations = new HashSet<>();
+        patch.forEach(operation -> operations.add(operation.getAsJsonObject().get("op").getAsString() + " " + operation.getAsJsonObject().get("path").getAsString()));
+        assertEquals(new HashSet<>(Arrays.asList("add /metadata/labels", "add /data")), operations);
+    }
+
+    @Test
+    public void escapesPaths() {
+
+        V1ConfigMap desired = new V1ConfigMap()
+                .metadata(new V1ObjectMeta().name("config").putLabelsItem("app/name", "web"));
+        V1ConfigMap live = new V1ConfigMap()
+                .metadata(new V1ObjectMeta().name("config").putLabelsItem("app/name", "db"));
+
+        JsonArray patch = ResourcePatch.diff(desired, live);
+
+        assertEquals(1, patch.size());
+        assertEquals("/metadata/labels/app~1name", patch.get(0).getAsJsonObject().get("path").getAsString());
+    }
+}
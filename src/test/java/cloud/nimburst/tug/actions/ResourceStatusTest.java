@@ -0,0 +1,194 @@
+package cloud.nimburst.tug.actions;
+
+import cloud.nimburst.tug.ResourceActionContext;
+import cloud.nimburst.tug.StatusSource;
+import cloud.nimburst.tug.TugManifest.Deployment;
+import cloud.nimburst.tug.TugOptions;
+import com.google.gson.reflect.TypeToken;
+import com.squareup.okhttp.Call;
+import io.kubernetes.client.ApiClient;
+import io.kubernetes.client.ApiException;
+import io.kubernetes.client.models.V1ObjectMeta;
+import io.kubernetes.client.models.V1Pod;
+import io.kubernetes.client.models.V1PodStatus;
+import io.kubernetes.client.util.Watch;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class ResourceStatusTest {
+
+    private static final Type WATCH_TYPE = new TypeToken<Watch.Response<V1Pod>>() {}.getType();
+
+    private final List<String> calls = new CopyOnWriteArrayList<>();
+    private ResourceActionContext context;
+
+    @After
+    public void closeContext() {
+
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    private ResourceActionContext context(int maxWatches) {
+
+        TugOptions options = new TugOptions();
+        options.setStatusSource(StatusSource.WATCH);
+        options.setMaxWatches(maxWatches);
+        context = new ResourceActionContext(options);
+        return context;
+    }
+
+    private static V1Pod pod(String name, String phase) {
+
+        return new V1Pod().metadata(new V1ObjectMeta().name(name)).status(new V1PodStatus().phase(phase));
+    }
+
+    @Test
+    public void watchesFromTheListedVersion() throws Exception {
+
+        PodStatus status = new PodStatus("web", context(1),
+                () -> Collections.singletonList(pod("web", "Pending")),
+                () -> WatchCalls.events(
+                        WatchCalls.podEvent("MODIFIED", "web", "5", "Pending"),
+                        WatchCalls.podEvent("MODIFIED", "web", "6", "Running")));
+
+        status.waitUntilReady().get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, calls.size());
+        assertTrue(calls.get(0).startsWith("list metadata.name=web"));
+        assertEquals("watch metadata.name=web from 4", calls.get(1));
+    }
+
+    @Test
+    public void resumesFromTheLastEventWhenTheWatchEnds() throws Exception {
+
+        int[] watches = {0};
+        PodStatus status = new PodStatus("web", context(1),
+                () -> Collections.singletonList(pod("web", "Pending")),
+                () -> ++watches[0] == 1
+                        ? WatchCalls.events(WatchCalls.podEvent("MODIFIED", "web", "5", "Pending"))
+                        : WatchCalls.events(WatchCalls.podEvent("MODIFIED", "web", "6", "Running")));
+
+        status.waitUntilReady().get(5, TimeUnit.SECONDS);
+
+        assertEquals("watch metadata.name=web from 5", calls.get(calls.size() - 1));
+    }
+
+    @Test
+    public void pollsWhenTheWatchFails() throws Exception {
+
+        int[] lists = {0};
+        PodStatus status = new PodStatus("web", context(1),
+                () -> Collections.singletonList(pod("web", ++lists[0] < 2 ? "Pending" : "Running")),
+                () -> {
+                    throw new ApiException(403, "forbidden");
+                });
+
+        status.waitUntilReady().get(5, TimeUnit.SECONDS);
+
+        assertTrue(calls.stream().anyMatch(call -> call.startsWith("watch")));
+        assertTrue(lists[0] >= 2);
+    }
+
+    @Test
+    public void pollsWhenNoWatchThreadIsFree() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        ResourceActionContext context = context(1);
+        try {
+            PodStatus blocked = new PodStatus("blocked", context,
+                    () -> Collections.singletonList(pod("blocked", "Pending")),
+                    () -> WatchCalls.blocking(release));
+            PodStatus polled = new PodStatus("web", context,
+                    () -> Collections.singletonList(pod("web", "Running")),
+                    () -> {
+                        throw new AssertionError("no watch thread should be left");
+                    });
+
+            CompletableFuture<Void> waiting = blocked.waitUntilReady();
+            while (calls.stream().noneMatch(call -> call.startsWith("watch metadata.name=blocked"))) {
+                Thread.sleep(10);
+            }
+            polled.waitUntilReady().get(5, TimeUnit.SECONDS);
+            assertFalse(waiting.isDone());
+            waiting.cancel(false);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Waits on pods listed and watched from fakes, ready once running.
+     */
+    private class PodStatus extends ResourceStatus<V1Pod> {
+
+        private final String name;
+        private final Supplier<List<V1Pod>> pods;
+        private final WatchCallSource watches;
+
+        PodStatus(String name, ResourceActionContext context, Supplier<List<V1Pod>> pods, WatchCallSource watches) {
+
+            super("Pod", new Deployment(), context);
+            this.name = name;
+            this.pods = pods;
+            this.watches = watches;
+        }
+
+        @Override
+        protected String getName() {
+            return name;
+        }
+
+        @Override
+        public String getNamespace() {
+            return "default";
+        }
+
+        @Override
+        protected V1ObjectMeta getMetadata(V1Pod resource) {
+            return resource.getMetadata();
+        }
+
+        @Override
+        protected Listing<V1Pod> list(String fieldSelector, String labelSelector, String resourceVersion) {
+
+            calls.add("list " + fieldSelector);
+            return new Listing<>(pods.get(), "4");
+        }
+
+        @Override
+        protected Call watchCall(ApiClient client, String fieldSelector, String resourceVersion, int timeoutSeconds) throws ApiException {
+
+            calls.add("watch " + fieldSelector + " from " + resourceVersion);
+            return watches.get();
+        }
+
+        @Override
+        protected Type watchType() {
+            return WATCH_TYPE;
+        }
+
+        @Override
+        protected boolean isReady(V1Pod resource) {
+            return "Running".equals(resource.getStatus().getPhase());
+        }
+    }
+
+    @FunctionalInterface
+    private interface WatchCallSource {
+
+        Call get() throws ApiException;
+    }
+}
@@ -0,0 +1,29 @@
+package cloud.nimburst.tug.actions;
+
+import cloud.nimburst.tug.ResourceActionContext;
+import cloud.nimburst.tug.TugManifest.Deployment;
+import cloud.nimburst.tug.TugOptions;
+import io.kubernetes.client.models.V1EndpointAddress;
+import io.kubernetes.client.models.V1EndpointSubset;
+import io.kubernetes.client.models.V1Endpoints;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ServiceEndpointsTest {
+
+    @Test
+    public void readyOnceAnAddressIsReady() {
+
+        try (ResourceActionContext context = new ResourceActionContext(new TugOptions())) {
+            ServiceEndpoints endpoints = new ServiceEndpoints("web", "default", new Deployment(), context);
+
+            assertFalse(endpoints.isReady(new V1Endpoints()));
+            V1Endpoints starting = new V1Endpoints()
+                    .addSubsetsItem(new V1EndpointSubset().addNotReadyAddressesItem(new V1EndpointAddress().ip("10.0.0.1")));
+            assertFalse(endpoints.isReady(starting));
+            starting.addSubsetsItem(new V1EndpointSubset().addAddressesItem(new V1EndpointAddress().ip("10.0.0.2")));
+            assertTrue(endpoints.isReady(starting));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package cloud.nimburst.tug.actions;
+
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Watch calls answered in process, without an API server.
+ */
+final class WatchCalls {
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private WatchCalls() {
+    }
+
+    /**
+     * Builds a watch call whose response streams the given events and then ends, as when the server times the watch
+     * out.
+     *
+     * @param events the watch events as JSON, one per line
+     * @return the call
+     */
+    static Call events(String... events) {
+
+        String body = events.length == 0 ? "" : String.join("\n", events) + "\n";
+        return call(chain -> response(chain.request(), body));
+    }
+
+    /**
+     * Builds a watch call which blocks until released and then ends without events.
+     *
+     * @param release the latch releasing the call
+     * @return the call
+     */
+    static Call blocking(CountDownLatch release) {
+
+        return call(chain -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            return response(chain.request(), "");
+        });
+    }
+
+    /**
+     * Builds a watch event on a pod.
+     *
+     * @param type            the event type
+     * @param name            the pod name
+     * @param resourceVersion the resource version of the pod
+     * @param phase           the phase of the pod
+     * @return the event as JSON
+     */
+    static String podEvent(String type, String name, String resourceVersion, String phase) {
+
+        return String.format("{\"type\":\"%s\",\"object\":{\"metadata\":{\"name\":\"%s\",\"resourceVersion\":\"%s\"},"
+                + "\"status\":{\"phase\":\"%s\"}}}", type, name, resourceVersion, phase);
+    }
+
+    private static Call call(Interceptor server) {
+
+        OkHttpClient http = new OkHttpClient();
+        http.interceptors().add(server);
+        return http.newCall(new Request.Builder().url("http://localhost/api/v1/pods?watch=true").build());
+    }
+
+    private static Response response(Request request, String body) {
+
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .body(ResponseBody.create(JSON, body))
+                .build();
+    }
+}
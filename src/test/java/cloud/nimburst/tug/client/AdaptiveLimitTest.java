@@ -0,0 +1,105 @@
+package cloud.nimburst.tug.client;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveLimitTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void growsWhileBusyAndHealthy() {
+
+        long now = System.nanoTime();
+        AdaptiveLimit limit = new AdaptiveLimit(2, 4, now);
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+
+        limit.onResponse(10 * MILLI, 200, now);
+        limit.onResponse(10 * MILLI, 200, now);
+        assertEquals(2, limit.getLimit());
+        limit.onResponse(10 * MILLI, 200, now);
+        assertEquals(3, limit.getLimit());
+        assertTrue(limit.tryAcquire());
+
+        for (int i = 0; i < 100; i++) {
+            limit.onResponse(10 * MILLI, 200, now);
+        }
+        assertEquals(4, limit.getLimit());
+    }
+
+    @Test
+    public void tellsListenersWhenGrowing() {
+
+        long now = System.nanoTime();
+        AdaptiveLimit limit = new AdaptiveLimit(1, 4, now);
+        AtomicInteger increases = new AtomicInteger();
+        Runnable listener = increases::incrementAndGet;
+        limit.addIncreaseListener(listener);
+        assertTrue(limit.tryAcquire());
+
+        limit.onResponse(10 * MILLI, 200, now);
+        assertEquals(2, limit.getLimit());
+        assertEquals(1, increases.get());
+        limit.onResponse(10 * MILLI, 429, now);
+        assertEquals(1, increases.get());
+
+        limit.removeIncreaseListener(listener);
+        limit.onResponse(10 * MILLI, 200, now + 2 * SECOND);
+        assertEquals(1, increases.get());
+    }
+
+    @Test
+    public void staysPutWhileIdle() {
+
+        long now = System.nanoTime();
+        AdaptiveLimit limit = new AdaptiveLimit(4, 8, now);
+        for (int i = 0; i < 100; i++) {
+            limit.onResponse(10 * MILLI, 200, now);
+        }
+        assertEquals(4, limit.getLimit());
+    }
+
+    @Test
+    public void backsOffOnThrottlingOncePerInterval() {
+
+        long now = System.nanoTime();
+        AdaptiveLimit limit = new AdaptiveLimit(8, 8, now);
+
+        limit.onResponse(10 * MILLI, 429, now);
+        assertEquals(6, limit.getLimit());
+        limit.onResponse(10 * MILLI, 503, now);
+        assertEquals(6, limit.getLimit());
+        limit.onResponse(10 * MILLI, 503, now + 2 * SECOND);
+        assertEquals(4, limit.getLimit());
+        assertEquals("0.0s: 8, 0.0s: 6, 2.0s: 4", limit.report());
+    }
+
+    @Test
+    public void backsOffWhenLatencyRises() {
+
+        long now = System.nanoTime();
+        AdaptiveLimit limit = new AdaptiveLimit(8, 8, now);
+        limit.onResponse(20 * MILLI, 200, now);
+        for (int i = 0; i < 10; i++) {
+            limit.onResponse(500 * MILLI, 200, now);
+        }
+        assertEquals(6, limit.getLimit());
+    }
+
+    @Test
+    public void neverDropsBelowOne() {
+
+        long now = System.nanoTime();
+        AdaptiveLimit limit = new AdaptiveLimit(1, 4, now);
+        limit.onResponse(10 * MILLI, 500, now);
+        assertEquals(1, limit.getLimit());
+        assertTrue(limit.tryAcquire());
+    }
+}
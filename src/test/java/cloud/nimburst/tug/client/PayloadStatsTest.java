@@ -0,0 +1,52 @@
+package cloud.nimburst.tug.client;
+
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class PayloadStatsTest {
+
+    private static final String PODS = "/api/v1/namespaces/test/pods";
+
+    private static String get(PayloadStats stats, String body, String accept) throws IOException {
+
+        OkHttpClient http = new OkHttpClient();
+        http.interceptors().add(stats);
+        http.interceptors().add(chain -> new Response.Builder()
+                .request(chain.request())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .body(ResponseBody.create(MediaType.parse("application/json"), body))
+                .build());
+        Request.Builder request = new Request.Builder().url("https://localhost" + PODS);
+        if (accept != null) {
+            request.header("Accept", accept);
+        }
+        return http.newCall(request.build()).execute().body().string();
+    }
+
+    @Test
+    public void countsTheBytesAsTheyAreRead() throws IOException {
+
+        PayloadStats stats = new PayloadStats();
+        String full = "{\"items\":[{\"metadata\":{\"name\":\"a\"},\"spec\":{\"containers\":[]}}]}";
+        String metadata = "{\"items\":[{\"metadata\":{\"name\":\"a\"}},{\"metadata\":{\"name\":\"b\"}}]}";
+
+        assertEquals(full, get(stats, full, null));
+        stats.recordItems(PODS, false, 1);
+        assertEquals(metadata, get(stats, metadata, PayloadStats.METADATA_ACCEPT));
+        stats.recordItems(PODS, true, 2);
+
+        assertTrue(stats.hasMetadataLists());
+        assertEquals(String.format("metadata-only existence checks read %,d bytes, about %,d bytes less than whole resources",
+                metadata.length(), 2 * full.length() - metadata.length()), stats.report());
+    }
+}
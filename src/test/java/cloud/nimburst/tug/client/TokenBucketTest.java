@@ -0,0 +1,50 @@
+package cloud.nimburst.tug.client;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void allowsBurstThenSteadyRate() {
+
+        TokenBucket bucket = new TokenBucket(10, 3);
+        long now = System.nanoTime();
+
+        assertEquals(0, bucket.reserve(now));
+        assertEquals(0, bucket.reserve(now));
+        assertEquals(0, bucket.reserve(now));
+        assertEquals(SECOND / 10, bucket.reserve(now));
+        assertEquals(2 * SECOND / 10, bucket.reserve(now));
+    }
+
+    @Test
+    public void refillsOverTimeUpToBurst() {
+
+        TokenBucket bucket = new TokenBucket(10, 2);
+        long now = System.nanoTime();
+        bucket.reserve(now);
+        bucket.reserve(now);
+
+        long later = now + 10 * SECOND;
+        assertEquals(0, bucket.reserve(later));
+        assertEquals(0, bucket.reserve(later));
+        assertTrue(bucket.reserve(later) > 0);
+    }
+
+    @Test
+    public void waitsOutPause() {
+
+        TokenBucket bucket = new TokenBucket(10, 5);
+        bucket.pause(2 * SECOND);
+
+        long wait = bucket.reserve(System.nanoTime());
+        assertTrue(wait > SECOND);
+        assertTrue(wait <= 2 * SECOND + SECOND / 10);
+    }
+}